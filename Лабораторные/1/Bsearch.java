@@ -1,10 +1,12 @@
+package bsearch;
+
 import java.util.Arrays;
 import java.util.List;
 
 public class Bsearch {
 	public static void main(String[] args) {
 		List<Integer> list = Arrays.asList(1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024);
-		Integer[] array = (Integer[])list.toArray();
+		Integer[] array = list.toArray(new Integer[0]);
 		int value = 4;
 		int result = new ExtendedArray(array).binarySearch(value);
 		System.out.println("Position of " + value + " in " + list + " is " + result);
@@ -12,29 +14,13 @@ public class Bsearch {
 		value = 0;
 		result = new ExtendedArray(array).binarySearch(value);
 		System.out.println("Position of " + value + " in " + list + " is " + result);
-	}
-}
 
-class ExtendedArray {
-	private Integer[] data;
-	
-	public ExtendedArray(Integer[] source) {
-		this.data = source;
+		int[] keys = list.stream().mapToInt(Integer::intValue).toArray();
+		SortedIndex index = SortedIndex.eytzinger(keys);
+		int[] queries = {4, 0, 100};
+		System.out.println("Positions of " + Arrays.toString(queries) + " in " + list + " are "
+				+ Arrays.toString(index.searchAll(queries)));
+		System.out.println("Values in [" + queries[0] + ", " + queries[2] + "]: "
+				+ index.countRange(queries[0], queries[2]));
 	}
-	
-	public int binarySearch(int value){
-        int h = data.length - 1;
-        int l = 0;
-        while (h >= l) {
-                int m = l + ((h - l) / 2);
-                if (data[m] > value) {
-                        h = m - 1;
-                } else if (data[m] < value) {
-                        l = m + 1;
-                } else {
-                        return m;
-                }
-        }
-        return -1;
-	}
-}
\ No newline at end of file
+}
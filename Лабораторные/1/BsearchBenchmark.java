@@ -0,0 +1,136 @@
+package bsearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per lookup of {@link ExtendedArray#binarySearch} against {@link SortedIndex} in both
+ * layouts, one key at a time and with {@link SortedIndex#searchAll}. The keys are the even
+ * numbers, and the queries are random numbers of the same range, so about half of them are
+ * found. Every implementation has its own state, so only the structure being measured is in
+ * memory.
+ *
+ * <p>This lab has no build. Compile and run with the JMH jars, e.g. from a Maven repository:
+ * <pre>
+ * javac -cp jmh-core-1.37.jar:jmh-generator-annprocess-1.37.jar -d out *.java
+ * java -cp out:jmh-core-1.37.jar:jopt-simple-5.0.4.jar:commons-math3-3.6.1.jar org.openjdk.jmh.Main BsearchBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(BsearchBenchmark.QUERIES)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BsearchBenchmark {
+	static final int QUERIES = 4096;
+
+	private static final long SEED = 1;
+
+	@State(Scope.Benchmark)
+	public static class Data {
+		@Param({"1000", "100000", "10000000", "100000000"})
+		int size;
+
+		int[] keys;
+		int[] queries;
+
+		@Setup
+		public void generate() {
+			keys = new int[size];
+			for (int i = 0; i < size; i++) {
+				keys[i] = 2 * i;
+			}
+
+			Random random = new Random(SEED);
+			queries = new int[QUERIES];
+			for (int i = 0; i < QUERIES; i++) {
+				queries[i] = random.nextInt(2 * size);
+			}
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Boxed {
+		ExtendedArray array;
+
+		@Setup
+		public void build(Data data) {
+			Integer[] boxed = new Integer[data.size];
+			for (int i = 0; i < data.size; i++) {
+				boxed[i] = data.keys[i];
+			}
+			array = new ExtendedArray(boxed);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Sorted {
+		SortedIndex index;
+
+		@Setup
+		public void build(Data data) {
+			index = SortedIndex.sorted(data.keys);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Eytzinger {
+		SortedIndex index;
+
+		@Setup
+		public void build(Data data) {
+			index = SortedIndex.eytzinger(data.keys);
+		}
+	}
+
+	@Benchmark
+	public int extendedArray(Data data, Boxed boxed) {
+		int found = 0;
+		for (int query : data.queries) {
+			found += boxed.array.binarySearch(query);
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int sorted(Data data, Sorted sorted) {
+		int found = 0;
+		for (int query : data.queries) {
+			found += sorted.index.search(query);
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int eytzinger(Data data, Eytzinger eytzinger) {
+		int found = 0;
+		for (int query : data.queries) {
+			found += eytzinger.index.search(query);
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int[] sortedSearchAll(Data data, Sorted sorted) {
+		return sorted.index.searchAll(data.queries);
+	}
+
+	@Benchmark
+	public int[] eytzingerSearchAll(Data data, Eytzinger eytzinger) {
+		return eytzinger.index.searchAll(data.queries);
+	}
+}
@@ -0,0 +1,25 @@
+package bsearch;
+
+class ExtendedArray {
+	private Integer[] data;
+	
+	public ExtendedArray(Integer[] source) {
+		this.data = source;
+	}
+	
+	public int binarySearch(int value){
+        int h = data.length - 1;
+        int l = 0;
+        while (h >= l) {
+                int m = l + ((h - l) / 2);
+                if (data[m] > value) {
+                        h = m - 1;
+                } else if (data[m] < value) {
+                        l = m + 1;
+                } else {
+                        return m;
+                }
+        }
+        return -1;
+	}
+}
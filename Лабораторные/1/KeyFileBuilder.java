@@ -0,0 +1,204 @@
+package bsearch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Writes the file of a {@link MappedKeyFile} from unsorted keys with an external merge sort:
+ * the keys are read in runs of a fixed number, every run is sorted in memory and spilled to a
+ * temporary file next to the output, and then all runs are merged in a single pass through a
+ * heap of run cursors. Only one run and the merge buffers are in memory at a time, so the input
+ * may be much larger than the heap.
+ */
+final class KeyFileBuilder {
+	static final int DEFAULT_RUN_KEYS = 1 << 24;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final String RUN_PREFIX = "keys";
+	private static final String RUN_SUFFIX = ".run";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	private KeyFileBuilder() {
+	}
+
+	static void build(PrimitiveIterator.OfInt keys, Path output, int runKeys, int sampleStride) throws IOException {
+		Path directory = output.toAbsolutePath().getParent();
+		List<Path> runs = new ArrayList<>();
+		try {
+			long count = writeRuns(keys, runKeys, directory, runs);
+			if (count > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Too many keys: " + count);
+			}
+			merge(runs, (int) count, output, sampleStride);
+		} finally {
+			for (Path run : runs) {
+				Files.deleteIfExists(run);
+			}
+		}
+	}
+
+	/**
+	 * Sorts the keys run by run into temporary files added to the list.
+	 *
+	 * @return number of keys
+	 */
+	private static long writeRuns(PrimitiveIterator.OfInt keys, int runKeys, Path directory, List<Path> runs)
+			throws IOException {
+		long count = 0;
+		int[] run = new int[runKeys];
+		while (keys.hasNext()) {
+			int length = 0;
+			while (length < runKeys && keys.hasNext()) {
+				run[length++] = keys.nextInt();
+			}
+			Arrays.sort(run, 0, length);
+			runs.add(writeRun(run, length, directory));
+			count += length;
+		}
+		return count;
+	}
+
+	private static Path writeRun(int[] run, int length, Path directory) throws IOException {
+		Path path = Files.createTempFile(directory, RUN_PREFIX, RUN_SUFFIX);
+		try (DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE))) {
+			output.writeInt(length);
+			for (int i = 0; i < length; i++) {
+				output.writeInt(run[i]);
+			}
+		}
+		return path;
+	}
+
+	private static void merge(List<Path> runs, int count, Path output, int sampleStride) throws IOException {
+		PriorityQueue<RunCursor> heap = new PriorityQueue<>(Math.max(1, runs.size()),
+				Comparator.comparingInt(RunCursor::key));
+		int[] samples = new int[(count + sampleStride - 1) / sampleStride];
+		Path temporary = output.resolveSibling(output.getFileName() + TEMPORARY_SUFFIX);
+
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			for (Path run : runs) {
+				RunCursor cursor = new RunCursor(run);
+				if (cursor.advance()) {
+					heap.add(cursor);
+				}
+			}
+
+			// the rest of the header is zero padding up to the page the keys start on
+			ByteBuffer header = ByteBuffer.allocate(MappedKeyFile.HEADER_BYTES).order(MappedKeyFile.BYTE_ORDER);
+			header.putInt(MappedKeyFile.MAGIC).putInt(MappedKeyFile.VERSION).putLong(count).putInt(sampleStride);
+			header.clear();
+			write(channel, header);
+
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(MappedKeyFile.BYTE_ORDER);
+
+			for (int position = 0; position < count; position++) {
+				RunCursor cursor = heap.poll();
+				int key = cursor.key();
+				if (position % sampleStride == 0) {
+					samples[position / sampleStride] = key;
+				}
+				buffer = put(channel, buffer, key);
+				if (cursor.advance()) {
+					heap.add(cursor);
+				}
+			}
+			for (int sample : samples) {
+				buffer = put(channel, buffer, sample);
+			}
+			buffer.flip();
+			write(channel, buffer);
+		} finally {
+			for (RunCursor cursor : heap) {
+				cursor.close();
+			}
+		}
+
+		Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static ByteBuffer put(FileChannel channel, ByteBuffer buffer, int key) throws IOException {
+		if (!buffer.hasRemaining()) {
+			buffer.flip();
+			write(channel, buffer);
+			buffer.clear();
+		}
+		return buffer.putInt(key);
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Sorted run being merged, positioned at its current key.
+	 */
+	private static final class RunCursor {
+		private final DataInputStream input;
+		private int remaining;
+		private int key;
+
+		RunCursor(Path run) throws IOException {
+			this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE));
+			this.remaining = input.readInt();
+		}
+
+		int key() {
+			return key;
+		}
+
+		/**
+		 * Moves to the next key, closing the run when it is exhausted.
+		 *
+		 * @return whether there was a next key
+		 */
+		boolean advance() throws IOException {
+			if (remaining == 0) {
+				close();
+				return false;
+			}
+			key = input.readInt();
+			remaining--;
+			return true;
+		}
+
+		void close() throws IOException {
+			input.close();
+		}
+	}
+
+	/**
+	 * Usage: {@code java bsearch.KeyFileBuilder <input with an integer per line> <key file> [keys per run]}
+	 */
+	public static void main(String[] args) throws IOException {
+		int runKeys = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RUN_KEYS;
+		long before = System.nanoTime();
+		try (Stream<String> lines = Files.lines(Paths.get(args[0]))) {
+			build(lines.mapToInt(line -> Integer.parseInt(line.trim())).iterator(), Paths.get(args[1]), runKeys,
+					MappedKeyFile.DEFAULT_SAMPLE_STRIDE);
+		}
+		System.out.println("Built " + args[1] + " in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before) + " ms");
+	}
+}
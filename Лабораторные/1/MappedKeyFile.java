@@ -0,0 +1,143 @@
+package bsearch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorted keys searched in place in a memory-mapped file, so the table is limited by the disk
+ * rather than the heap and opening it reads nothing but the header and the samples. The file
+ * written by {@link KeyFileBuilder} holds a header padded to a 4 KB page, the keys as
+ * little-endian ints and every {@code sampleStride}-th key again as the samples. The samples are
+ * kept in the heap: a lookup finds the pair of samples around the key there and then
+ * binary-searches only the keys between them. As the keys start on a page boundary, with the
+ * default stride these lie in a single page of the file.
+ *
+ * <p>A mapping can't exceed 2 GB, so the keys are mapped in segments of 2<sup>28</sup> keys.
+ */
+final class MappedKeyFile extends SortedIndex {
+	static final int MAGIC = 0x4b455953;
+	static final int VERSION = 2;
+	static final int HEADER_BYTES = 4096;
+	static final int DEFAULT_SAMPLE_STRIDE = 1024;
+	static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	private static final int SEGMENT_SHIFT = 28;
+	private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+	private final IntBuffer[] segments;
+	private final SortedIndex samples;
+	private final int sampleStride;
+
+	private MappedKeyFile(int size, IntBuffer[] segments, int[] samples, int sampleStride) {
+		super(size);
+		this.segments = segments;
+		this.samples = SortedIndex.eytzinger(samples);
+		this.sampleStride = sampleStride;
+	}
+
+	static MappedKeyFile open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = read(channel, 0, HEADER_BYTES);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new IOException("Not a key file: " + path);
+			}
+			long count = header.getLong();
+			int sampleStride = header.getInt();
+			long numSamples = sampleStride > 0 ? (count + sampleStride - 1) / sampleStride : -1;
+			if (count < 0 || count > Integer.MAX_VALUE || numSamples < 0
+					|| channel.size() != HEADER_BYTES + (count + numSamples) * Integer.BYTES) {
+				throw new IOException("Corrupted key file: " + path);
+			}
+
+			IntBuffer[] segments = new IntBuffer[(int) ((count + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+			for (int segment = 0; segment < segments.length; segment++) {
+				long first = (long) segment << SEGMENT_SHIFT;
+				long keys = Math.min(1L << SEGMENT_SHIFT, count - first);
+				segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_BYTES + first * Integer.BYTES, keys * Integer.BYTES).order(BYTE_ORDER).asIntBuffer();
+			}
+
+			int[] samples = new int[(int) numSamples];
+			read(channel, HEADER_BYTES + count * Integer.BYTES, samples.length * Integer.BYTES)
+					.asIntBuffer().get(samples);
+
+			return new MappedKeyFile((int) count, segments, samples, sampleStride);
+		}
+	}
+
+	/**
+	 * Key at the given position of the sorted order.
+	 */
+	int get(int position) {
+		return segments[position >>> SEGMENT_SHIFT].get(position & SEGMENT_MASK);
+	}
+
+	@Override
+	int lowerBound(int key) {
+		// the first sample not less than the key bounds the keys that have to be searched
+		int sample = samples.lowerBound(key);
+		if (sample == 0) {
+			return 0;
+		}
+
+		int base = (sample - 1) * sampleStride + 1;
+		int end = (int) Math.min((long) sample * sampleStride, size);
+		if (base == end) {
+			return base;
+		}
+		for (int length = end - base; length > 1; ) {
+			int half = length >>> 1;
+			base += half & lessMask(get(base + half), key);
+			length -= half;
+		}
+		return get(base) < key ? base + 1 : base;
+	}
+
+	@Override
+	int search(int key) {
+		int position = lowerBound(key);
+		return position < size && get(position) == key ? position : NOT_FOUND;
+	}
+
+	@Override
+	int[] searchAll(int[] keys) {
+		int[] result = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			result[i] = search(keys[i]);
+		}
+		return result;
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(BYTE_ORDER);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Usage: {@code java bsearch.MappedKeyFile <key file> <key>...}
+	 */
+	public static void main(String[] args) throws IOException {
+		long before = System.nanoTime();
+		MappedKeyFile file = open(Paths.get(args[0]));
+		System.out.println("Opened " + file.size() + " keys in "
+				+ TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - before) + " us");
+
+		for (int i = 1; i < args.length; i++) {
+			int value = Integer.parseInt(args[i]);
+			System.out.println("Position of " + value + " is " + file.search(value));
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package bsearch;
+
+import java.util.Arrays;
+
+/**
+ * Read-only index over a sorted {@code int[]} answering membership, lower and upper bound and
+ * range count queries. Positions are always positions in the sorted array, whatever the layout.
+ *
+ * <p>Two layouts are available. {@link #sorted} searches the array itself with a branchless
+ * binary search: every step advances the base by a mask computed from the comparison, so there
+ * are no mispredicted branches, only the loads. (HotSpot compiles the equivalent conditional
+ * expression to a branch, which mispredicts on half of the steps of random lookups.)
+ * {@link #eytzinger} stores the keys in the breadth-first order of the implicit search tree, so
+ * the first levels of every search share a few cache lines and the keys probed at one level lie
+ * next to each other.
+ *
+ * <p>{@link #searchAll} runs a group of searches in lock step, one level per round. Java has no
+ * prefetch instruction, but the loads of independent searches in a round don't depend on each
+ * other, so the processor overlaps their cache misses instead of waiting for them one by one.
+ */
+abstract class SortedIndex {
+	static final int NOT_FOUND = -1;
+
+	private static final int LANES = 16;
+
+	protected final int size;
+
+	SortedIndex(int size) {
+		this.size = size;
+	}
+
+	static SortedIndex sorted(int[] sorted) {
+		return new SortedArrayIndex(sorted);
+	}
+
+	static SortedIndex eytzinger(int[] sorted) {
+		return new EytzingerIndex(sorted);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Position of the first key greater than or equal to the given one, or {@link #size()} when
+	 * there is no such key.
+	 */
+	abstract int lowerBound(int key);
+
+	/**
+	 * Position of the first occurrence of the key, or {@link #NOT_FOUND}.
+	 */
+	abstract int search(int key);
+
+	/**
+	 * Results of {@link #search} for every key, computed with interleaved searches.
+	 */
+	abstract int[] searchAll(int[] keys);
+
+	/**
+	 * Position of the first key greater than the given one, or {@link #size()} when there is no
+	 * such key.
+	 */
+	int upperBound(int key) {
+		return key == Integer.MAX_VALUE ? size : lowerBound(key + 1);
+	}
+
+	/**
+	 * Number of keys {@code k} with {@code from <= k <= to}.
+	 */
+	int countRange(int from, int to) {
+		return from > to ? 0 : upperBound(to) - lowerBound(from);
+	}
+
+	/**
+	 * All ones when {@code value < key}, zero otherwise, computed without a branch.
+	 */
+	static int lessMask(int value, int key) {
+		return (int) (((long) value - key) >> 63);
+	}
+
+	static final class SortedArrayIndex extends SortedIndex {
+		private final int[] data;
+
+		SortedArrayIndex(int[] sorted) {
+			super(sorted.length);
+			this.data = sorted.clone();
+		}
+
+		@Override
+		int lowerBound(int key) {
+			if (size == 0) {
+				return 0;
+			}
+			int base = 0;
+			for (int length = size; length > 1; ) {
+				int half = length >>> 1;
+				base += half & lessMask(data[base + half], key);
+				length -= half;
+			}
+			return data[base] < key ? base + 1 : base;
+		}
+
+		@Override
+		int search(int key) {
+			int position = lowerBound(key);
+			return position < size && data[position] == key ? position : NOT_FOUND;
+		}
+
+		@Override
+		int[] searchAll(int[] keys) {
+			int[] result = new int[keys.length];
+			if (size == 0) {
+				Arrays.fill(result, NOT_FOUND);
+				return result;
+			}
+
+			int[] bases = new int[LANES];
+			for (int start = 0; start < keys.length; start += LANES) {
+				int lanes = Math.min(LANES, keys.length - start);
+				Arrays.fill(bases, 0);
+
+				for (int length = size; length > 1; ) {
+					int half = length >>> 1;
+					for (int lane = 0; lane < lanes; lane++) {
+						int base = bases[lane];
+						bases[lane] = base + (half & lessMask(data[base + half], keys[start + lane]));
+					}
+					length -= half;
+				}
+
+				for (int lane = 0; lane < lanes; lane++) {
+					int key = keys[start + lane];
+					int position = data[bases[lane]] < key ? bases[lane] + 1 : bases[lane];
+					result[start + lane] = position < size && data[position] == key ? position : NOT_FOUND;
+				}
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Keys in the 1-based Eytzinger order: the children of node {@code k} are {@code 2k} and
+	 * {@code 2k + 1}. A search descends to the right while the node is less than the key, and the
+	 * lower bound is the node where it last went left, found by stripping the trailing right
+	 * turns off the final node number.
+	 */
+	static final class EytzingerIndex extends SortedIndex {
+		private static final int MAX_SIZE = 1 << 30;
+
+		private final int[] tree;
+		private final int[] positions;
+		private final int levels;
+
+		EytzingerIndex(int[] sorted) {
+			super(sorted.length);
+			if (size >= MAX_SIZE) {
+				// node numbers of the last level would overflow
+				throw new IllegalArgumentException("Too many keys: " + size);
+			}
+			this.tree = new int[size + 1];
+			this.positions = new int[size + 1];
+			this.levels = Integer.SIZE - Integer.numberOfLeadingZeros(size);
+
+			int position = 0;
+			// in-order traversal of the implicit tree without recursion
+			for (int node = leftmost(1); node != 0; node = successor(node)) {
+				tree[node] = sorted[position];
+				positions[node] = position++;
+			}
+		}
+
+		@Override
+		int lowerBound(int key) {
+			int node = lowerBoundNode(key);
+			return node == 0 ? size : positions[node];
+		}
+
+		@Override
+		int search(int key) {
+			int node = lowerBoundNode(key);
+			return node != 0 && tree[node] == key ? positions[node] : NOT_FOUND;
+		}
+
+		@Override
+		int[] searchAll(int[] keys) {
+			int[] result = new int[keys.length];
+			int[] nodes = new int[LANES];
+
+			for (int start = 0; start < keys.length; start += LANES) {
+				int lanes = Math.min(LANES, keys.length - start);
+				Arrays.fill(nodes, 1);
+
+				for (int level = 0; level < levels; level++) {
+					for (int lane = 0; lane < lanes; lane++) {
+						int node = nodes[lane];
+						if (node <= size) {
+							nodes[lane] = 2 * node - lessMask(tree[node], keys[start + lane]);
+						}
+					}
+				}
+
+				for (int lane = 0; lane < lanes; lane++) {
+					int node = nodes[lane] >>> (Integer.numberOfTrailingZeros(~nodes[lane]) + 1);
+					result[start + lane] = node != 0 && tree[node] == keys[start + lane]
+							? positions[node]
+							: NOT_FOUND;
+				}
+			}
+			return result;
+		}
+
+		private int lowerBoundNode(int key) {
+			int node = 1;
+			while (node <= size) {
+				node = 2 * node - lessMask(tree[node], key);
+			}
+			return node >>> (Integer.numberOfTrailingZeros(~node) + 1);
+		}
+
+		private int leftmost(int node) {
+			if (node > size) {
+				return 0;
+			}
+			while (2 * node <= size) {
+				node *= 2;
+			}
+			return node;
+		}
+
+		private int successor(int node) {
+			if (2 * node + 1 <= size) {
+				return leftmost(2 * node + 1);
+			}
+			// climb while coming from a right child, then the parent is next
+			while ((node & 1) == 1) {
+				node >>>= 1;
+			}
+			return node >>> 1;
+		}
+	}
+}
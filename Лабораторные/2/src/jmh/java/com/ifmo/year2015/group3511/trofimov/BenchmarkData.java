@@ -0,0 +1,46 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import java.util.Random;
+
+/**
+ * Synthetic data sets for the benchmarks: numeric attributes drawn from a normal distribution
+ * and a two-valued class that depends on the first attributes plus noise.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class BenchmarkData {
+
+    private static final String[] CLASS_VALUES = {"small", "large"};
+    private static final int INFORMATIVE_ATTRIBUTES = 3;
+    private static final double NOISE = 0.5;
+
+    private BenchmarkData() {
+    }
+
+    static ColumnarData generate(final int rows, final int attributes, final long seed) {
+        Random random = new Random(seed);
+        String[] names = new String[attributes + 1];
+        String[][] dictionaries = new String[attributes + 1][];
+        double[][] columns = new double[attributes + 1][rows];
+
+        for (int column = 0; column < attributes; column++) {
+            names[column] = "attribute" + column;
+            for (int row = 0; row < rows; row++) {
+                columns[column][row] = random.nextGaussian();
+            }
+        }
+
+        names[attributes] = "class";
+        dictionaries[attributes] = CLASS_VALUES;
+        for (int row = 0; row < rows; row++) {
+            double score = random.nextGaussian() * NOISE;
+            for (int column = 0; column < Math.min(INFORMATIVE_ATTRIBUTES, attributes); column++) {
+                score += columns[column][row];
+            }
+            columns[attributes][row] = score > 0 ? 1 : 0;
+        }
+
+        return new ColumnarData("generated-" + rows + "x" + attributes, names, dictionaries, columns, rows, 0, 0);
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import weka.core.Instances;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quality evaluation of an attribute set (J48graft with ten-fold cross-validation on the shared
+ * folds) on generated data sets of growing size, bypassing the quality cache. The projection of
+ * the data set onto the attribute set is measured separately.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class QualityBenchmark {
+
+    private static final int ATTRIBUTES = 12;
+    private static final long SEED = 1;
+    private static final int NUM_FOLDS = 10;
+
+    @Param({"500", "2000", "8000"})
+    private int rows;
+
+    @Param({"4", "12"})
+    private int selectedAttributes;
+
+    private AttributeProjection projection;
+    private BitSet attributeSet;
+
+    @Setup
+    public void prepareData() {
+        Instances data = BenchmarkData.generate(rows, ATTRIBUTES, SEED).toInstances();
+        projection = new AttributeProjection(data, FoldPartition.create(data, NUM_FOLDS, new Random(SEED)));
+        attributeSet = new BitSet();
+        attributeSet.set(0, selectedAttributes);
+        attributeSet.set(projection.getData().classIndex());
+    }
+
+    @Benchmark
+    public Instances project() {
+        return projection.project(attributeSet);
+    }
+
+    @Benchmark
+    public double evaluateQuality() throws Exception {
+        return Main.computeQualityForAttributeSet(projection, attributeSet);
+    }
+
+}
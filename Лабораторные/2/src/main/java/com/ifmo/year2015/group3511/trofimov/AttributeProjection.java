@@ -0,0 +1,83 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import weka.core.FastVector;
+import weka.core.Instances;
+
+import java.util.BitSet;
+
+/**
+ * Projects a data set onto attribute sets without copying the instance values: the values of
+ * every instance are extracted once and the projected instances only map columns onto them.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class AttributeProjection {
+
+    private final Instances data;
+    private final FoldPartition folds;
+    private final double[][] values;
+    private final double[] weights;
+    private final int[] allRows;
+
+    AttributeProjection(final Instances data, final FoldPartition folds) {
+        this.data = data;
+        this.folds = folds;
+        this.values = new double[data.numInstances()][];
+        this.weights = new double[data.numInstances()];
+        this.allRows = new int[data.numInstances()];
+        for (int instanceIndex = 0; instanceIndex < data.numInstances(); instanceIndex++) {
+            values[instanceIndex] = data.instance(instanceIndex).toDoubleArray();
+            weights[instanceIndex] = data.instance(instanceIndex).weight();
+            allRows[instanceIndex] = instanceIndex;
+        }
+    }
+
+    Instances getData() {
+        return data;
+    }
+
+    /**
+     * @return cross-validation folds of the source data set, shared by all projections
+     */
+    FoldPartition getFolds() {
+        return folds;
+    }
+
+    /**
+     * @param attributeSet attributes to keep, must contain the class attribute
+     * @return data set with the given attributes only, backed by the values of the source data set
+     */
+    Instances project(final BitSet attributeSet) {
+        return project(attributeSet, allRows);
+    }
+
+    /**
+     * @param attributeSet attributes to keep, must contain the class attribute
+     * @param rows         rows of the source data set to keep, in the order they should appear in
+     * @return data set with the given attributes and rows only, backed by the values of the source
+     * data set
+     */
+    Instances project(final BitSet attributeSet, final int[] rows) {
+        if (!attributeSet.get(data.classIndex())) {
+            throw new IllegalArgumentException("Attribute set " + attributeSet + " doesn't contain the class attribute");
+        }
+        int[] columns = new int[attributeSet.cardinality()];
+        FastVector attributes = new FastVector(columns.length);
+        int classIndex = 0;
+        int column = 0;
+        for (int attributeIndex = attributeSet.nextSetBit(0); attributeIndex >= 0; attributeIndex = attributeSet.nextSetBit(attributeIndex + 1)) {
+            if (attributeIndex == data.classIndex()) {
+                classIndex = column;
+            }
+            columns[column++] = attributeIndex;
+            attributes.addElement(data.attribute(attributeIndex).copy());
+        }
+        Instances projection = new Instances(data.relationName(), attributes, rows.length);
+        projection.setClassIndex(classIndex);
+        for (final int row : rows) {
+            projection.add(new ProjectedInstance(values[row], columns, weights[row]));
+        }
+        return projection;
+    }
+
+}
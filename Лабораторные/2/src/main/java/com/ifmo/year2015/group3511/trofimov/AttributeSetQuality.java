@@ -0,0 +1,55 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import java.util.BitSet;
+
+/**
+ * Attribute set (bit {@code i} is the attribute with index {@code i}) together with its quality.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class AttributeSetQuality {
+
+    static final AttributeSetQuality NONE = new AttributeSetQuality(new BitSet(), Double.MIN_VALUE);
+
+    private final BitSet attributeSet;
+    private final double quality;
+
+    AttributeSetQuality(final BitSet attributeSet, final double quality) {
+        this.attributeSet = attributeSet;
+        this.quality = quality;
+    }
+
+    BitSet getAttributeSet() {
+        return attributeSet;
+    }
+
+    double getQuality() {
+        return quality;
+    }
+
+    /**
+     * Picks the better of two results. Higher quality wins, equal qualities are resolved in favour
+     * of the smaller mask, which is exactly what an ascending sequential scan with a strict
+     * comparison would keep, so the merge order of partial results does not matter.
+     */
+    static AttributeSetQuality best(final AttributeSetQuality first, final AttributeSetQuality second) {
+        if (first.quality != second.quality) {
+            return first.quality > second.quality ? first : second;
+        }
+        return compareMasks(first.attributeSet, second.attributeSet) <= 0 ? first : second;
+    }
+
+    /**
+     * Compares attribute sets as unsigned binary numbers.
+     */
+    static int compareMasks(final BitSet first, final BitSet second) {
+        BitSet difference = (BitSet) first.clone();
+        difference.xor(second);
+        int highestDifference = difference.length() - 1;
+        if (highestDifference < 0) {
+            return 0;
+        }
+        return second.get(highestDifference) ? -1 : 1;
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import java.util.*;
+
+/**
+ * Forward beam search: every level extends each of the best {@code width} attribute sets of the
+ * previous level by one more attribute. Like the sequential attribute addition the search stops
+ * when the best quality of a level decreases, when all the attributes are selected or when the
+ * budget is exhausted.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class BeamSearch {
+
+    private static final Comparator<AttributeSetQuality> BEST_FIRST = Comparator
+            .comparingDouble(AttributeSetQuality::getQuality).reversed()
+            .thenComparing(AttributeSetQuality::getAttributeSet, AttributeSetQuality::compareMasks);
+
+    private final AttributeProjection projection;
+    private final SearchBudget budget;
+    private final int width;
+
+    BeamSearch(final AttributeProjection projection, final SearchBudget budget, final int width) {
+        this.projection = projection;
+        this.budget = budget;
+        this.width = width;
+    }
+
+    AttributeSetQuality search() {
+        BitSet classOnly = new BitSet();
+        classOnly.set(projection.getData().classIndex());
+        List<AttributeSetQuality> beam = Collections.singletonList(new AttributeSetQuality(classOnly, Double.MIN_VALUE));
+        AttributeSetQuality best = AttributeSetQuality.NONE;
+        while (!budget.isExhausted()) {
+            Set<BitSet> candidates = new LinkedHashSet<>();
+            for (final AttributeSetQuality parent : beam) {
+                for (int attributeIndex = 0; attributeIndex < projection.getData().numAttributes(); attributeIndex++) {
+                    if (!parent.getAttributeSet().get(attributeIndex)) {
+                        BitSet candidate = (BitSet) parent.getAttributeSet().clone();
+                        candidate.set(attributeIndex);
+                        candidates.add(candidate);
+                    }
+                }
+            }
+            List<AttributeSetQuality> level = new ArrayList<>(candidates.size());
+            AttributeSetQuality levelBest = AttributeSetQuality.NONE;
+            for (final BitSet candidate : candidates) {
+                if (budget.isExhausted()) {
+                    break;
+                }
+                AttributeSetQuality result = budget.evaluate(candidate, projection);
+                level.add(result);
+                levelBest = AttributeSetQuality.best(levelBest, result);
+                Main.printSearchProgress(budget.getEvaluations(), AttributeSetQuality.best(best, levelBest).getQuality());
+            }
+            if (level.isEmpty() || levelBest.getQuality() < best.getQuality()) {
+                break;
+            }
+            best = AttributeSetQuality.best(best, levelBest);
+            level.sort(BEST_FIRST);
+            beam = level.subList(0, Math.min(width, level.size()));
+        }
+        return best;
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Narendra–Fukunaga branch and bound search for the best set of exactly {@code size} attributes.
+ * Starting from the full attribute set every node removes one more attribute, with a position in
+ * the attribute order greater than the last removed one and small enough to leave attributes for
+ * the remaining removals, so every set of {@code size} attributes is a leaf reached exactly once.
+ * The bound is the best quality of a leaf found so far, and a node whose quality does not exceed
+ * it is not expanded. Children are expanded best first, so the first leaves reached set a high
+ * bound early.
+ *
+ * <p>Pruning is exact when removing attributes never increases the quality. Cross-validated
+ * accuracy is not monotone, so then the result is only as good as the best leaf below the nodes
+ * that beat the bound. The search stops early once the budget is exhausted and keeps the best leaf
+ * found so far.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class BranchAndBoundSearch {
+
+    private static final Comparator<AttributeSetQuality> BEST_FIRST = Comparator
+            .comparingDouble(AttributeSetQuality::getQuality).reversed();
+
+    private final AttributeProjection projection;
+    private final SearchBudget budget;
+    private final int[] attributes;
+    private final int removals;
+    private AttributeSetQuality best = AttributeSetQuality.NONE;
+
+    BranchAndBoundSearch(final AttributeProjection projection, final SearchBudget budget, final int size) {
+        int classIndex = projection.getData().classIndex();
+        int numAttributes = projection.getData().numAttributes() - 1;
+        if (size < 1 || size > numAttributes) {
+            throw new IllegalArgumentException("Attribute set size " + size + " is out of range 1.." + numAttributes);
+        }
+        this.projection = projection;
+        this.budget = budget;
+        this.attributes = new int[numAttributes];
+        for (int attributeIndex = 0, position = 0; attributeIndex <= numAttributes; attributeIndex++) {
+            if (attributeIndex != classIndex) {
+                attributes[position++] = attributeIndex;
+            }
+        }
+        this.removals = numAttributes - size;
+    }
+
+    AttributeSetQuality search() {
+        BitSet allAttributes = new BitSet();
+        allAttributes.set(0, projection.getData().numAttributes());
+        AttributeSetQuality root = budget.evaluate(allAttributes, projection);
+        if (removals == 0) {
+            return root;
+        }
+        branch(root, 0, 0);
+        return best;
+    }
+
+    /**
+     * Expands the node that has {@code removed} attributes removed, the last of them at a position
+     * lower than {@code firstRemovablePosition}.
+     */
+    private void branch(final AttributeSetQuality node, final int removed, final int firstRemovablePosition) {
+        int lastRemovablePosition = attributes.length - removals + removed;
+        List<AttributeSetQuality> children = new ArrayList<>(lastRemovablePosition - firstRemovablePosition + 1);
+        List<Integer> nextRemovablePositions = new ArrayList<>(lastRemovablePosition - firstRemovablePosition + 1);
+        for (int position = firstRemovablePosition; position <= lastRemovablePosition; position++) {
+            if (budget.isExhausted()) {
+                return;
+            }
+            BitSet childAttributeSet = (BitSet) node.getAttributeSet().clone();
+            childAttributeSet.clear(attributes[position]);
+            AttributeSetQuality child = budget.evaluate(childAttributeSet, projection);
+            if (removed + 1 == removals) {
+                best = AttributeSetQuality.best(best, child);
+            } else {
+                children.add(child);
+                nextRemovablePositions.add(position + 1);
+            }
+            Main.printSearchProgress(budget.getEvaluations(), best.getQuality());
+        }
+        List<Integer> order = new ArrayList<>(children.size());
+        for (int child = 0; child < children.size(); child++) {
+            order.add(child);
+        }
+        order.sort(Comparator.comparing(children::get, BEST_FIRST));
+        for (final int child : order) {
+            if (children.get(child).getQuality() <= best.getQuality()) {
+                continue;
+            }
+            branch(children.get(child), removed + 1, nextRemovablePositions.get(child));
+        }
+    }
+
+}
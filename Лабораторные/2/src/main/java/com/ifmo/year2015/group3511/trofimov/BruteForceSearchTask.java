@@ -0,0 +1,82 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import java.util.BitSet;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Evaluates every attribute set mask in {@code [from, to]} splitting the range in halves
+ * until it is small enough to be scanned by a single worker.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class BruteForceSearchTask extends RecursiveTask<AttributeSetQuality> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long SEQUENTIAL_THRESHOLD = 8;
+
+    private final AttributeProjection projection;
+    private final long from;
+    private final long to;
+    private final Progress progress;
+
+    BruteForceSearchTask(final AttributeProjection projection, final long from, final long to, final Progress progress) {
+        this.projection = projection;
+        this.from = from;
+        this.to = to;
+        this.progress = progress;
+    }
+
+    @Override
+    protected AttributeSetQuality compute() {
+        if (to - from < SEQUENTIAL_THRESHOLD) {
+            return scan();
+        }
+        long middle = from + (to - from) / 2;
+        BruteForceSearchTask left = new BruteForceSearchTask(projection, from, middle, progress);
+        BruteForceSearchTask right = new BruteForceSearchTask(projection, middle + 1, to, progress);
+        left.fork();
+        AttributeSetQuality rightBest = right.compute();
+        return AttributeSetQuality.best(left.join(), rightBest);
+    }
+
+    private AttributeSetQuality scan() {
+        AttributeSetQuality best = AttributeSetQuality.NONE;
+        for (long currentAttributeSet = from; currentAttributeSet <= to; currentAttributeSet++) {
+            BitSet attributeSet = BitSet.valueOf(new long[]{currentAttributeSet});
+            double attributeSetQuality;
+            try {
+                attributeSetQuality = Main.getQualityForAttributeSet(attributeSet, projection);
+            } catch (final Exception e) {
+                throw new IllegalStateException(e);
+            }
+            AttributeSetQuality current = new AttributeSetQuality(attributeSet, attributeSetQuality);
+            best = AttributeSetQuality.best(best, current);
+            progress.done(current);
+        }
+        return best;
+    }
+
+    /**
+     * Shared progress of all the tasks of one search, used for reporting only.
+     */
+    static class Progress {
+
+        private final long total;
+        private final AtomicLong done = new AtomicLong();
+        private final AtomicReference<AttributeSetQuality> best = new AtomicReference<>(AttributeSetQuality.NONE);
+
+        Progress(final long total) {
+            this.total = total;
+        }
+
+        void done(final AttributeSetQuality result) {
+            AttributeSetQuality currentBest = best.accumulateAndGet(result, AttributeSetQuality::best);
+            Main.printProgress(done.incrementAndGet(), total, currentBest.getQuality());
+        }
+
+    }
+
+}
@@ -0,0 +1,249 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary columnar copy of a parsed data set stored next to the source file. The file consists
+ * of a header (source file stamp, relation, attribute names and nominal dictionaries) followed
+ * by the columns: numeric columns as doubles, nominal columns as int codes with {@code -1} for
+ * missing values. The cache is read through a memory mapping and is rebuilt whenever the stamp of
+ * the source file differs from the recorded one, or when the cache itself turns out to be
+ * truncated or corrupt.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class ColumnarCache {
+
+    private static final String CACHE_EXTENSION = ".columns";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private static final int MAGIC = 0x434f4c53;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MISSING_CODE = -1;
+    private static final int CHECKSUM_BLOCK_SIZE = 1 << 26;
+    private static final String CHECKSUM_PROPERTY = "data.cache.checksum";
+    private static final long NO_CHECKSUM = -1;
+    private static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private ColumnarCache() {
+    }
+
+    /**
+     * Loads the data set from its cache, parsing the source and writing the cache when the
+     * cache is missing or stale.
+     */
+    static ColumnarData load(final Path source) throws IOException {
+        long before = System.nanoTime();
+        Path cache = source.resolveSibling(source.getFileName() + CACHE_EXTENSION);
+        SourceStamp stamp = SourceStamp.of(source);
+
+        ColumnarData cached = read(cache, stamp, before);
+        if (cached != null) {
+            return cached;
+        }
+
+        ColumnarData data = DataLoader.load(source);
+        try {
+            write(cache, stamp, data);
+        } catch (final IOException e) {
+            System.out.println("Can't write data cache " + cache + ": " + e.getMessage());
+        }
+        return data;
+    }
+
+    private static ColumnarData read(final Path cache, final SourceStamp stamp, final long before) throws IOException {
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(BYTE_ORDER);
+
+            int headerLength = buffer.getInt();
+            if (headerLength < 0 || headerLength > buffer.remaining()) {
+                return null;
+            }
+            byte[] headerBytes = new byte[headerLength];
+            buffer.get(headerBytes);
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes));
+
+            if (header.readInt() != MAGIC || header.readInt() != FORMAT_VERSION || !stamp.matches(SourceStamp.read(header))) {
+                return null;
+            }
+
+            String relationName = header.readUTF();
+            int numColumns = header.readInt();
+            int numRows = header.readInt();
+            if (numColumns < 0 || numColumns > headerLength || numRows < 0) {
+                return null;
+            }
+            String[] names = new String[numColumns];
+            String[][] dictionaries = new String[numColumns][];
+
+            for (int column = 0; column < numColumns; column++) {
+                names[column] = header.readUTF();
+                if (header.readBoolean()) {
+                    int dictionarySize = header.readInt();
+                    if (dictionarySize < 0 || dictionarySize > headerLength) {
+                        return null;
+                    }
+                    dictionaries[column] = new String[dictionarySize];
+                    for (int value = 0; value < dictionaries[column].length; value++) {
+                        dictionaries[column][value] = header.readUTF();
+                    }
+                }
+            }
+
+            long columnBytes = 0;
+            for (int column = 0; column < numColumns; column++) {
+                columnBytes += (long) numRows * (dictionaries[column] == null ? Double.BYTES : Integer.BYTES);
+            }
+            if (columnBytes != buffer.remaining()) {
+                return null;
+            }
+
+            double[][] columns = new double[numColumns][numRows];
+            for (int column = 0; column < numColumns; column++) {
+                if (dictionaries[column] == null) {
+                    buffer.asDoubleBuffer().get(columns[column]);
+                    buffer.position(buffer.position() + numRows * Double.BYTES);
+                } else {
+                    int[] codes = new int[numRows];
+                    buffer.asIntBuffer().get(codes);
+                    buffer.position(buffer.position() + numRows * Integer.BYTES);
+                    for (int row = 0; row < numRows; row++) {
+                        columns[column][row] = codes[row] == MISSING_CODE ? Double.NaN : codes[row];
+                    }
+                }
+            }
+
+            return new ColumnarData(relationName, names, dictionaries, columns, numRows,
+                    channel.size(), System.nanoTime() - before);
+        } catch (final NoSuchFileException | EOFException | UTFDataFormatException | BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    private static void write(final Path cache, final SourceStamp stamp, final ColumnarData data) throws IOException {
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+
+        header.writeInt(MAGIC);
+        header.writeInt(FORMAT_VERSION);
+        stamp.write(header);
+        header.writeUTF(data.getRelationName());
+        header.writeInt(data.numColumns());
+        header.writeInt(data.getNumRows());
+        for (int column = 0; column < data.numColumns(); column++) {
+            header.writeUTF(data.getAttributeNames()[column]);
+            header.writeBoolean(data.isNominal(column));
+            if (data.isNominal(column)) {
+                header.writeInt(data.getDictionaries()[column].length);
+                for (final String value : data.getDictionaries()[column]) {
+                    header.writeUTF(value);
+                }
+            }
+        }
+        header.flush();
+
+        Path temporary = cache.resolveSibling(cache.getFileName() + TEMPORARY_EXTENSION);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer headerLength = ByteBuffer.allocate(Integer.BYTES).order(BYTE_ORDER);
+            headerLength.putInt(headerBytes.size()).flip();
+            writeFully(channel, headerLength);
+            writeFully(channel, ByteBuffer.wrap(headerBytes.toByteArray()));
+
+            for (int column = 0; column < data.numColumns(); column++) {
+                double[] values = data.getColumns()[column];
+                ByteBuffer columnBytes;
+                if (data.isNominal(column)) {
+                    columnBytes = ByteBuffer.allocate(values.length * Integer.BYTES).order(BYTE_ORDER);
+                    for (final double value : values) {
+                        columnBytes.putInt(Double.isNaN(value) ? MISSING_CODE : (int) value);
+                    }
+                } else {
+                    columnBytes = ByteBuffer.allocate(values.length * Double.BYTES).order(BYTE_ORDER);
+                    columnBytes.asDoubleBuffer().put(values);
+                    columnBytes.position(columnBytes.capacity());
+                }
+                columnBytes.flip();
+                writeFully(channel, columnBytes);
+            }
+        }
+
+        Files.move(temporary, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Size and modification time of the source file the cache was built from. Its CRC32 is
+     * computed only when the {@code data.cache.checksum} system property is set: reading the whole
+     * source costs about as much as parsing it, which the cache is there to avoid.
+     */
+    private static class SourceStamp {
+
+        private final long size;
+        private final long modified;
+        private final long checksum;
+
+        private SourceStamp(final long size, final long modified, final long checksum) {
+            this.size = size;
+            this.modified = modified;
+            this.checksum = checksum;
+        }
+
+        static SourceStamp of(final Path source) throws IOException {
+            if (!Boolean.getBoolean(CHECKSUM_PROPERTY)) {
+                return new SourceStamp(Files.size(source), Files.getLastModifiedTime(source).toMillis(), NO_CHECKSUM);
+            }
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+                CRC32 crc = new CRC32();
+                long size = channel.size();
+                for (long position = 0; position < size; position += CHECKSUM_BLOCK_SIZE) {
+                    crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHECKSUM_BLOCK_SIZE, size - position)));
+                }
+                return new SourceStamp(size, Files.getLastModifiedTime(source).toMillis(), crc.getValue());
+            }
+        }
+
+        static SourceStamp read(final DataInputStream input) throws IOException {
+            return new SourceStamp(input.readLong(), input.readLong(), input.readLong());
+        }
+
+        /**
+         * Whether a cache built from a source with the recorded stamp is still valid. The recorded
+         * checksum is compared only when this stamp has one.
+         */
+        boolean matches(final SourceStamp recorded) {
+            return size == recorded.size && modified == recorded.modified
+                    && (checksum == NO_CHECKSUM || checksum == recorded.checksum);
+        }
+
+        void write(final DataOutputStream output) throws IOException {
+            output.writeLong(size);
+            output.writeLong(modified);
+            output.writeLong(checksum);
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import weka.core.Attribute;
+import weka.core.FastVector;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Data set stored as primitive columns. Nominal values are indexes into the dictionary of their
+ * column and missing values are {@link Double#NaN}, which is how Weka encodes them as well.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class ColumnarData {
+
+    private final String relationName;
+    private final String[] attributeNames;
+    private final String[][] dictionaries;
+    private final double[][] columns;
+    private final int numRows;
+    private final long sourceBytes;
+    private final long loadTimeNanos;
+
+    ColumnarData(final String relationName, final String[] attributeNames, final String[][] dictionaries,
+                 final double[][] columns, final int numRows, final long sourceBytes, final long loadTimeNanos) {
+        this.relationName = relationName;
+        this.attributeNames = attributeNames;
+        this.dictionaries = dictionaries;
+        this.columns = columns;
+        this.numRows = numRows;
+        this.sourceBytes = sourceBytes;
+        this.loadTimeNanos = loadTimeNanos;
+    }
+
+    String getRelationName() {
+        return relationName;
+    }
+
+    String[] getAttributeNames() {
+        return attributeNames;
+    }
+
+    /**
+     * @return dictionary of every nominal column, {@code null} for numeric columns
+     */
+    String[][] getDictionaries() {
+        return dictionaries;
+    }
+
+    double[][] getColumns() {
+        return columns;
+    }
+
+    int getNumRows() {
+        return numRows;
+    }
+
+    int numColumns() {
+        return columns.length;
+    }
+
+    boolean isNominal(final int column) {
+        return dictionaries[column] != null;
+    }
+
+    long getSourceBytes() {
+        return sourceBytes;
+    }
+
+    long getLoadTimeNanos() {
+        return loadTimeNanos;
+    }
+
+    double getThroughput() {
+        return sourceBytes / (loadTimeNanos / 1e9) / (1 << 20);
+    }
+
+    /**
+     * Builds Weka instances with the last column as the class, materializing every row once.
+     */
+    Instances toInstances() {
+        FastVector attributes = new FastVector(numColumns());
+        for (int column = 0; column < numColumns(); column++) {
+            if (isNominal(column)) {
+                FastVector values = new FastVector(dictionaries[column].length);
+                for (final String value : dictionaries[column]) {
+                    values.addElement(value);
+                }
+                attributes.addElement(new Attribute(attributeNames[column], values));
+            } else {
+                attributes.addElement(new Attribute(attributeNames[column]));
+            }
+        }
+        Instances instances = new Instances(relationName, attributes, numRows);
+        for (int row = 0; row < numRows; row++) {
+            double[] values = new double[numColumns()];
+            for (int column = 0; column < numColumns(); column++) {
+                values[column] = columns[column][row];
+            }
+            instances.add(new Instance(1.0, values));
+        }
+        instances.setClassIndex(numColumns() - 1);
+        return instances;
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Cross-validation with folds trained in parallel. The folds are split with the same random
+ * sequence as {@link Evaluation#crossValidateModel} uses (see {@link FoldPartition}), and the
+ * predictions of every fold are recorded in fold order, so the resulting evaluation is the same as
+ * the sequential one. Fold tasks are forked into the pool of the calling task, or the common pool
+ * otherwise.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class CrossValidation {
+
+    private CrossValidation() {
+    }
+
+    /**
+     * Cross-validates the classifier on the projection of the shared folds onto the attribute set.
+     */
+    static void crossValidateModel(final Evaluation evaluation, final Classifier classifier,
+                                   final AttributeProjection projection, final BitSet attributeSet) throws Exception {
+        FoldPartition folds = projection.getFolds();
+        int numFolds = folds.getNumFolds();
+        List<Instances> trainFolds = new ArrayList<>(numFolds);
+        List<Instances> testFolds = new ArrayList<>(numFolds);
+        List<ForkJoinTask<double[][]>> foldTasks = new ArrayList<>(numFolds);
+        for (int fold = 0; fold < numFolds; fold++) {
+            Instances train = projection.project(attributeSet, folds.getTrainRows(fold));
+            Instances test = projection.project(attributeSet, folds.getTestRows(fold));
+            trainFolds.add(train);
+            testFolds.add(test);
+            foldTasks.add(ForkJoinTask.adapt(() -> predict(classifier, train, test)));
+        }
+        ForkJoinTask.invokeAll(foldTasks);
+        for (int fold = 0; fold < numFolds; fold++) {
+            Instances test = testFolds.get(fold);
+            double[][] distributions = foldTasks.get(fold).join();
+            evaluation.setPriors(trainFolds.get(fold));
+            for (int instanceIndex = 0; instanceIndex < test.numInstances(); instanceIndex++) {
+                evaluation.evaluateModelOnceAndRecordPrediction(distributions[instanceIndex], test.instance(instanceIndex));
+            }
+        }
+    }
+
+    private static double[][] predict(final Classifier classifier, final Instances train, final Instances test) throws Exception {
+        Classifier foldClassifier = Classifier.makeCopy(classifier);
+        foldClassifier.buildClassifier(train);
+        double[][] distributions = new double[test.numInstances()][];
+        for (int instanceIndex = 0; instanceIndex < test.numInstances(); instanceIndex++) {
+            Instance classMissing = (Instance) test.instance(instanceIndex).copy();
+            classMissing.setDataset(test);
+            classMissing.setClassMissing();
+            distributions[instanceIndex] = test.classAttribute().isNominal()
+                    ? foldClassifier.distributionForInstance(classMissing)
+                    : new double[]{foldClassifier.classifyInstance(classMissing)};
+        }
+        return distributions;
+    }
+
+}
@@ -0,0 +1,455 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Loads ARFF and CSV files into {@link ColumnarData}. The file is memory-mapped, the data section
+ * is split into chunks at line boundaries and the chunks are tokenized in parallel into primitive
+ * columns, which are concatenated in file order afterwards. Nominal values are dictionary-encoded:
+ * ARFF files use the declared values, CSV columns become nominal when any of their values is not
+ * a number and keep their values in order of first appearance.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class DataLoader {
+
+    private static final String CSV_EXTENSION = ".csv";
+    private static final String RELATION_KEYWORD = "@relation";
+    private static final String ATTRIBUTE_KEYWORD = "@attribute";
+    private static final String DATA_KEYWORD = "@data";
+    private static final String MISSING_VALUE = "?";
+    private static final char COMMENT = '%';
+    private static final char SEPARATOR = ',';
+    private static final byte NEW_LINE = '\n';
+
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 1 << 28;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int INITIAL_CHUNK_ROWS = 64;
+    private static final int LINE_SCAN_BUFFER_SIZE = 1 << 12;
+
+    private DataLoader() {
+    }
+
+    static ColumnarData load(final Path path) throws IOException {
+        long before = System.nanoTime();
+
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            LineReader headReader = new LineReader(
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE)));
+            boolean csv = path.getFileName().toString().toLowerCase(Locale.ENGLISH).endsWith(CSV_EXTENSION);
+            Header header = csv
+                    ? readCsvHeader(headReader, path.getFileName().toString())
+                    : readArffHeader(headReader);
+            List<long[]> chunks = splitIntoChunks(channel, header.dataStart, size);
+
+            boolean[] nominal = csv
+                    ? inferNominalColumns(channel, chunks, header.names.size())
+                    : header.nominalColumns();
+
+            List<Chunk> parsed = chunks.parallelStream()
+                    .map(chunk -> parseChunk(map(channel, chunk), nominal))
+                    .collect(Collectors.toList());
+
+            String[][] dictionaries = csv
+                    ? mergeDictionaries(parsed, nominal)
+                    : header.dictionaries.toArray(new String[header.dictionaries.size()][]);
+            double[][] columns = concatenate(parsed, dictionaries, header.names);
+
+            return new ColumnarData(header.relationName, header.names.toArray(new String[header.names.size()]),
+                    dictionaries, columns, columns.length == 0 ? 0 : columns[0].length,
+                    size, System.nanoTime() - before);
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Header readArffHeader(final LineReader reader) {
+        Header header = new Header();
+
+        while (reader.nextLine()) {
+            String line = reader.lineAsString().trim();
+            String lowerCaseLine = line.toLowerCase(Locale.ENGLISH);
+
+            if (line.isEmpty() || line.charAt(0) == COMMENT) {
+                continue;
+            }
+            if (lowerCaseLine.startsWith(RELATION_KEYWORD)) {
+                header.relationName = unquote(line.substring(RELATION_KEYWORD.length()).trim());
+            } else if (lowerCaseLine.startsWith(ATTRIBUTE_KEYWORD)) {
+                readAttribute(header, line.substring(ATTRIBUTE_KEYWORD.length()).trim());
+            } else if (lowerCaseLine.startsWith(DATA_KEYWORD)) {
+                header.dataStart = reader.position();
+                return header;
+            } else {
+                throw new IllegalArgumentException("Unexpected line in ARFF header: " + line);
+            }
+        }
+
+        throw new IllegalArgumentException("ARFF file has no " + DATA_KEYWORD + " section");
+    }
+
+    private static void readAttribute(final Header header, final String declaration) {
+        int nameEnd = declaration.charAt(0) == '\'' || declaration.charAt(0) == '"'
+                ? declaration.indexOf(declaration.charAt(0), 1) + 1
+                : indexOfWhitespace(declaration);
+        if (nameEnd <= 0) {
+            throw new IllegalArgumentException("Malformed attribute declaration: " + declaration);
+        }
+
+        String name = unquote(declaration.substring(0, nameEnd));
+        String type = declaration.substring(nameEnd).trim();
+        header.names.add(name);
+
+        if (type.startsWith("{") && type.endsWith("}")) {
+            List<String> values = tokenize(type.substring(1, type.length() - 1));
+            header.dictionaries.add(values.toArray(new String[values.size()]));
+        } else if (Arrays.asList("numeric", "real", "integer").contains(type.toLowerCase(Locale.ENGLISH))) {
+            header.dictionaries.add(null);
+        } else {
+            throw new IllegalArgumentException("Unsupported type " + type + " of attribute " + name);
+        }
+    }
+
+    private static Header readCsvHeader(final LineReader reader, final String fileName) {
+        if (!reader.nextLine()) {
+            throw new IllegalArgumentException("CSV file " + fileName + " is empty");
+        }
+
+        Header header = new Header();
+        header.relationName = fileName.substring(0, fileName.length() - CSV_EXTENSION.length());
+        header.names.addAll(tokenize(reader.lineAsString()));
+        header.dataStart = reader.position();
+        return header;
+    }
+
+    private static List<long[]> splitIntoChunks(final FileChannel channel, final long dataStart, final long size) throws IOException {
+        long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE,
+                (size - dataStart) / (ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD)));
+        List<long[]> chunks = new ArrayList<>();
+        long start = dataStart;
+
+        while (start < size) {
+            long end = start + chunkSize >= size ? size : nextLineStart(channel, start + chunkSize, size);
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+
+        return chunks;
+    }
+
+    private static long nextLineStart(final FileChannel channel, final long from, final long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(LINE_SCAN_BUFFER_SIZE);
+        long position = from;
+
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == NEW_LINE) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+
+        return size;
+    }
+
+    private static LineReader map(final FileChannel channel, final long[] chunk) {
+        try {
+            return new LineReader(channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean[] inferNominalColumns(final FileChannel channel, final List<long[]> chunks, final int numColumns) {
+        boolean[] nominal = new boolean[numColumns];
+
+        chunks.parallelStream()
+                .map(chunk -> findNonNumericColumns(map(channel, chunk), numColumns))
+                .forEachOrdered(chunkNominal -> {
+                    for (int column = 0; column < numColumns; column++) {
+                        nominal[column] |= chunkNominal[column];
+                    }
+                });
+
+        return nominal;
+    }
+
+    private static boolean[] findNonNumericColumns(final LineReader reader, final int numColumns) {
+        boolean[] nominal = new boolean[numColumns];
+
+        while (reader.nextLine()) {
+            List<String> tokens = readDataLine(reader, numColumns);
+            if (tokens == null) {
+                continue;
+            }
+            for (int column = 0; column < numColumns; column++) {
+                if (!nominal[column] && !MISSING_VALUE.equals(tokens.get(column))) {
+                    try {
+                        Double.parseDouble(tokens.get(column));
+                    } catch (final NumberFormatException e) {
+                        nominal[column] = true;
+                    }
+                }
+            }
+        }
+
+        return nominal;
+    }
+
+    private static Chunk parseChunk(final LineReader reader, final boolean[] nominal) {
+        Chunk chunk = new Chunk(nominal);
+
+        while (reader.nextLine()) {
+            List<String> tokens = readDataLine(reader, nominal.length);
+            if (tokens != null) {
+                chunk.add(tokens);
+            }
+        }
+
+        return chunk;
+    }
+
+    private static List<String> readDataLine(final LineReader reader, final int numColumns) {
+        String line = reader.lineAsString().trim();
+
+        if (line.isEmpty() || line.charAt(0) == COMMENT) {
+            return null;
+        }
+        if (line.charAt(0) == '{') {
+            throw new IllegalArgumentException("Sparse instances are not supported");
+        }
+
+        List<String> tokens = tokenize(line);
+        if (tokens.size() != numColumns) {
+            throw new IllegalArgumentException("Expected " + numColumns + " values, but got "
+                    + tokens.size() + " in line: " + line);
+        }
+        return tokens;
+    }
+
+    private static String[][] mergeDictionaries(final List<Chunk> chunks, final boolean[] nominal) {
+        String[][] dictionaries = new String[nominal.length][];
+
+        for (int column = 0; column < nominal.length; column++) {
+            if (nominal[column]) {
+                Map<String, Integer> merged = new LinkedHashMap<>();
+                for (final Chunk chunk : chunks) {
+                    chunk.dictionaries.get(column).keySet().forEach(value -> merged.putIfAbsent(value, merged.size()));
+                }
+                dictionaries[column] = merged.keySet().toArray(new String[merged.size()]);
+            }
+        }
+
+        return dictionaries;
+    }
+
+    private static double[][] concatenate(final List<Chunk> chunks, final String[][] dictionaries, final List<String> names) {
+        int numRows = chunks.stream().mapToInt(chunk -> chunk.numRows).sum();
+        double[][] columns = new double[dictionaries.length][numRows];
+        int offset = 0;
+
+        for (final Chunk chunk : chunks) {
+            for (int column = 0; column < dictionaries.length; column++) {
+                if (dictionaries[column] == null) {
+                    System.arraycopy(chunk.columns[column], 0, columns[column], offset, chunk.numRows);
+                } else {
+                    double[] codes = remapCodes(chunk.dictionaries.get(column), dictionaries[column], names.get(column));
+                    for (int row = 0; row < chunk.numRows; row++) {
+                        double localCode = chunk.columns[column][row];
+                        columns[column][offset + row] = Double.isNaN(localCode) ? localCode : codes[(int) localCode];
+                    }
+                }
+            }
+            offset += chunk.numRows;
+        }
+
+        return columns;
+    }
+
+    private static double[] remapCodes(final Map<String, Integer> localDictionary, final String[] dictionary, final String name) {
+        List<String> values = Arrays.asList(dictionary);
+        double[] codes = new double[localDictionary.size()];
+
+        localDictionary.forEach((value, localCode) -> {
+            int code = values.indexOf(value);
+            if (code < 0) {
+                throw new IllegalArgumentException("Value " + value + " is not declared for attribute " + name);
+            }
+            codes[localCode] = code;
+        });
+
+        return codes;
+    }
+
+    private static List<String> tokenize(final String line) {
+        List<String> tokens = new ArrayList<>();
+        int position = 0;
+
+        while (position <= line.length()) {
+            while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+                position++;
+            }
+
+            StringBuilder token = new StringBuilder();
+            if (position < line.length() && (line.charAt(position) == '\'' || line.charAt(position) == '"')) {
+                char quote = line.charAt(position++);
+                while (position < line.length() && line.charAt(position) != quote) {
+                    if (line.charAt(position) == '\\' && position + 1 < line.length()) {
+                        position++;
+                    }
+                    token.append(line.charAt(position++));
+                }
+                position++;
+                while (position < line.length() && line.charAt(position) != SEPARATOR) {
+                    position++;
+                }
+            } else {
+                int separator = line.indexOf(SEPARATOR, position);
+                int end = separator < 0 ? line.length() : separator;
+                token.append(line, position, end);
+                position = end;
+                while (token.length() > 0 && Character.isWhitespace(token.charAt(token.length() - 1))) {
+                    token.setLength(token.length() - 1);
+                }
+            }
+
+            tokens.add(token.toString());
+            position++;
+        }
+
+        return tokens;
+    }
+
+    private static String unquote(final String value) {
+        return value.length() >= 2 && (value.charAt(0) == '\'' || value.charAt(0) == '"')
+                && value.charAt(value.length() - 1) == value.charAt(0)
+                ? value.substring(1, value.length() - 1)
+                : value;
+    }
+
+    private static int indexOfWhitespace(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isWhitespace(value.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class Header {
+        String relationName = "";
+        final List<String> names = new ArrayList<>();
+        final List<String[]> dictionaries = new ArrayList<>();
+        long dataStart;
+
+        boolean[] nominalColumns() {
+            boolean[] nominal = new boolean[dictionaries.size()];
+            for (int column = 0; column < nominal.length; column++) {
+                nominal[column] = dictionaries.get(column) != null;
+            }
+            return nominal;
+        }
+    }
+
+    /**
+     * Columns of one chunk; nominal values are encoded with dictionaries local to the chunk.
+     */
+    private static class Chunk {
+        final boolean[] nominal;
+        final List<Map<String, Integer>> dictionaries;
+        double[][] columns;
+        int numRows;
+
+        Chunk(final boolean[] nominal) {
+            this.nominal = nominal;
+            this.dictionaries = new ArrayList<>(nominal.length);
+            this.columns = new double[nominal.length][INITIAL_CHUNK_ROWS];
+            for (final boolean isNominal : nominal) {
+                dictionaries.add(isNominal ? new LinkedHashMap<>() : null);
+            }
+        }
+
+        void add(final List<String> tokens) {
+            if (numRows == columns[0].length) {
+                for (int column = 0; column < columns.length; column++) {
+                    columns[column] = Arrays.copyOf(columns[column], numRows * 2);
+                }
+            }
+
+            for (int column = 0; column < columns.length; column++) {
+                String token = tokens.get(column);
+                if (MISSING_VALUE.equals(token)) {
+                    columns[column][numRows] = Double.NaN;
+                } else if (nominal[column]) {
+                    Map<String, Integer> dictionary = dictionaries.get(column);
+                    columns[column][numRows] = dictionary.computeIfAbsent(token, value -> dictionary.size());
+                } else {
+                    columns[column][numRows] = Double.parseDouble(token);
+                }
+            }
+
+            numRows++;
+        }
+    }
+
+    /**
+     * Reads lines of a memory-mapped region.
+     */
+    private static class LineReader {
+        private final MappedByteBuffer buffer;
+        private int lineStart;
+        private int lineEnd;
+        private int position;
+
+        LineReader(final MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean nextLine() {
+            if (position >= buffer.limit()) {
+                return false;
+            }
+
+            lineStart = position;
+            while (position < buffer.limit() && buffer.get(position) != NEW_LINE) {
+                position++;
+            }
+            lineEnd = position > lineStart && buffer.get(position - 1) == '\r' ? position - 1 : position;
+            position++;
+            return true;
+        }
+
+        String lineAsString() {
+            byte[] bytes = new byte[lineEnd - lineStart];
+            ByteBuffer line = buffer.duplicate();
+            line.position(lineStart);
+            line.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long position() {
+            return Math.min(position, buffer.limit());
+        }
+    }
+
+}
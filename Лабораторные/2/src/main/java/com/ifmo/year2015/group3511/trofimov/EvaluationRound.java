@@ -0,0 +1,61 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates the independent candidate attribute sets of one round of a sequential search
+ * concurrently. Qualities are returned in the order of the candidates, so choosing the first
+ * best candidate gives the same result as the single-threaded round.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class EvaluationRound {
+
+    private final AttributeProjection projection;
+    private final ForkJoinPool pool;
+
+    EvaluationRound(final AttributeProjection projection, final ForkJoinPool pool) {
+        this.projection = projection;
+        this.pool = pool;
+    }
+
+    AttributeProjection getProjection() {
+        return projection;
+    }
+
+    List<Double> evaluate(final List<BitSet> attributeSets) throws Exception {
+        List<Callable<Double>> tasks = new ArrayList<>(attributeSets.size());
+        for (final BitSet attributeSet : attributeSets) {
+            tasks.add(() -> Main.getQualityForAttributeSet(attributeSet, projection));
+        }
+        List<Double> qualities = new ArrayList<>(tasks.size());
+        for (final Future<Double> future : pool.invokeAll(tasks)) {
+            try {
+                qualities.add(future.get());
+            } catch (final ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+        return qualities;
+    }
+
+    /**
+     * @return index of the first candidate with the highest quality or -1 for an empty round
+     */
+    static int bestIndex(final List<Double> qualities) {
+        int bestIndex = -1;
+        for (int index = 0; index < qualities.size(); index++) {
+            if (bestIndex < 0 || qualities.get(index) > qualities.get(bestIndex)) {
+                bestIndex = index;
+            }
+        }
+        return bestIndex;
+    }
+
+}
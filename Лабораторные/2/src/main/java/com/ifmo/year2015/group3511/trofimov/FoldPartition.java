@@ -0,0 +1,75 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import weka.core.Attribute;
+import weka.core.FastVector;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.Random;
+
+/**
+ * Rows of the train and test folds of a data set, in the order
+ * {@link weka.classifiers.Evaluation#crossValidateModel} would put them with the same random
+ * generator. Randomization, stratification and fold splitting depend only on the number of
+ * instances and their class values, so the folds are computed once on a data set of row numbers
+ * and class values and then shared by every attribute subset.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class FoldPartition {
+
+    private static final String ROW_ATTRIBUTE = "row";
+
+    private final int[][] trainRows;
+    private final int[][] testRows;
+
+    private FoldPartition(final int[][] trainRows, final int[][] testRows) {
+        this.trainRows = trainRows;
+        this.testRows = testRows;
+    }
+
+    static FoldPartition create(final Instances data, final int numFolds, final Random random) {
+        FastVector attributes = new FastVector(2);
+        attributes.addElement(new Attribute(ROW_ATTRIBUTE));
+        attributes.addElement(data.classAttribute().copy());
+        Instances rows = new Instances(data.relationName(), attributes, data.numInstances());
+        rows.setClassIndex(1);
+        for (int row = 0; row < data.numInstances(); row++) {
+            rows.add(new Instance(1.0, new double[]{row, data.instance(row).classValue()}));
+        }
+
+        rows.randomize(random);
+        if (rows.classAttribute().isNominal()) {
+            rows.stratify(numFolds);
+        }
+
+        int[][] trainRows = new int[numFolds][];
+        int[][] testRows = new int[numFolds][];
+        for (int fold = 0; fold < numFolds; fold++) {
+            trainRows[fold] = getRows(rows.trainCV(numFolds, fold, random));
+            testRows[fold] = getRows(rows.testCV(numFolds, fold));
+        }
+        return new FoldPartition(trainRows, testRows);
+    }
+
+    private static int[] getRows(final Instances rows) {
+        int[] result = new int[rows.numInstances()];
+        for (int instanceIndex = 0; instanceIndex < result.length; instanceIndex++) {
+            result[instanceIndex] = (int) rows.instance(instanceIndex).value(0);
+        }
+        return result;
+    }
+
+    int getNumFolds() {
+        return trainRows.length;
+    }
+
+    int[] getTrainRows(final int fold) {
+        return trainRows[fold];
+    }
+
+    int[] getTestRows(final int fold) {
+        return testRows[fold];
+    }
+
+}
@@ -3,14 +3,14 @@ package com.ifmo.year2015.group3511.trofimov;
 import weka.classifiers.Evaluation;
 import weka.classifiers.trees.J48graft;
 import weka.core.Instances;
-import weka.filters.Filter;
-import weka.filters.unsupervised.attribute.Remove;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author vladislav.trofimov@emc.com
@@ -18,71 +18,185 @@ import java.util.*;
 public class Main {
 
     private static final String INPUT_FILE_NAME = "data.arff";
+    private static final String INPUT_FILE_PROPERTY = "input.file";
+    private static final String WORKERS_PROPERTY = "workers";
+    private static final String CACHE_FILE_PROPERTY = "cache.file";
+    private static final String CACHE_SIZE_PROPERTY = "cache.size";
+    private static final int DEFAULT_CACHE_SIZE = 1 << 20;
+    private static final String BEAM_WIDTH_PROPERTY = "beam.width";
+    private static final int DEFAULT_BEAM_WIDTH = 5;
+    private static final String SUBSET_SIZE_PROPERTY = "subset.size";
+    private static final int NUM_FOLDS = 10;
+    private static final long SEED = 1;
+    private static final String[] CLASSIFIER_OPTIONS = {"-U"};
+
+    private static final String SEQUENTIAL_ALGORITHM = "sequential";
+    private static final String BRUTE_FORCE_ALGORITHM = "brute-force";
+    private static final String BRANCH_AND_BOUND_ALGORITHM = "branch-and-bound";
+    private static final String BEAM_ALGORITHM = "beam";
+    private static final String BACKWARD_ALGORITHM = "backward";
+    private static final String FLOATING_ALGORITHM = "floating";
+    private static final String[] DEFAULT_ALGORITHMS = {SEQUENTIAL_ALGORITHM, BRUTE_FORCE_ALGORITHM};
+
+    private static QualityCache qualityCache = QualityCache.inMemory(DEFAULT_CACHE_SIZE);
 
     public static void main(final String[] args) throws Exception {
+        String inputFileName = System.getProperty(INPUT_FILE_PROPERTY, INPUT_FILE_NAME);
         Instances data = null;
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(INPUT_FILE_NAME));
-            data = new Instances(reader);
-            reader.close();
-        } catch (final FileNotFoundException e) {
-            System.out.println("Can't find file " + INPUT_FILE_NAME);
-        } catch (final IOException e) {
-            System.out.println("Error parsing file " + INPUT_FILE_NAME);
+            ColumnarData columnarData = ColumnarCache.load(Paths.get(inputFileName));
+            System.out.printf(Locale.ENGLISH, "Loaded %d instances with %d attributes in %d ms (%.1f MB/s)%n", columnarData.getNumRows(),
+                    columnarData.numColumns(), TimeUnit.NANOSECONDS.toMillis(columnarData.getLoadTimeNanos()), columnarData.getThroughput());
+            data = columnarData.toInstances();
+        } catch (final NoSuchFileException e) {
+            System.out.println("Can't find file " + inputFileName);
+        } catch (final IOException | IllegalArgumentException e) {
+            System.out.println("Error parsing file " + inputFileName);
         }
         if (data != null) {
-            data.setClassIndex(data.numAttributes() - 1);
-            processSequentialAttributeAdditionAlgorithm(data);
-            processBruteForceAlgorithm(data);
+            String cacheFileName = System.getProperty(CACHE_FILE_PROPERTY, inputFileName + ".quality");
+            try {
+                qualityCache = QualityCache.open(new File(cacheFileName), data, NUM_FOLDS, SEED, createClassifier(),
+                        Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+            } catch (final IOException e) {
+                System.out.println("Can't use quality cache file " + cacheFileName);
+            }
+            AttributeProjection projection = new AttributeProjection(data, FoldPartition.create(data, NUM_FOLDS, new Random(SEED)));
+            int workers = Integer.getInteger(WORKERS_PROPERTY, Runtime.getRuntime().availableProcessors());
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            EvaluationRound round = new EvaluationRound(projection, pool);
+            for (final String algorithm : args.length == 0 ? DEFAULT_ALGORITHMS : args) {
+                switch (algorithm) {
+                    case SEQUENTIAL_ALGORITHM:
+                        processSequentialAttributeAdditionAlgorithm(round);
+                        break;
+                    case BRUTE_FORCE_ALGORITHM:
+                        processBruteForceAlgorithm(projection, pool);
+                        break;
+                    case BRANCH_AND_BOUND_ALGORITHM:
+                        processBranchAndBoundAlgorithm(projection);
+                        break;
+                    case BEAM_ALGORITHM:
+                        processBeamAlgorithm(projection);
+                        break;
+                    case BACKWARD_ALGORITHM:
+                        processBackwardEliminationAlgorithm(round);
+                        break;
+                    case FLOATING_ALGORITHM:
+                        processFloatingForwardSelectionAlgorithm(round);
+                        break;
+                    default:
+                        System.out.println("Unknown algorithm " + algorithm + ", expected one of: " + SEQUENTIAL_ALGORITHM + ", "
+                                + BRUTE_FORCE_ALGORITHM + ", " + BRANCH_AND_BOUND_ALGORITHM + ", " + BEAM_ALGORITHM + ", "
+                                + BACKWARD_ALGORITHM + ", " + FLOATING_ALGORITHM);
+                }
+            }
+            pool.shutdown();
+            qualityCache.close();
+            System.out.println("Quality cache hits: " + qualityCache.getHits() + ", misses: " + qualityCache.getMisses());
         }
     }
 
-    private static void processBruteForceAlgorithm(final Instances data) {
+    private static void processBruteForceAlgorithm(final AttributeProjection projection, final ForkJoinPool pool) {
+        Instances data = projection.getData();
         if (data.numAttributes() > 63) {
             throw new IllegalArgumentException("Trying to brute-force more than 63 attributes");
         }
-        long noAttributesValue = 1 << data.numAttributes() - 1;
-        long allAttributesValue = (1 << data.numAttributes()) - 1;
+        long noAttributesValue = 1L << data.numAttributes() - 1;
+        long allAttributesValue = (1L << data.numAttributes()) - 1;
         long totalAttributeSetCount = allAttributesValue - noAttributesValue;
         try {
-            System.out.println("Starting brute-force algorithm");
-            long bestAttributeSet = 0;
-            double bestAttributeSetQuality = Double.MIN_VALUE;
-            for (long currentAttributeSet = noAttributesValue + 1; currentAttributeSet <= allAttributesValue; currentAttributeSet++) {
-                double attributeSetQuality = getQualityForAttributeSet(getAttributesOptions(Long.toBinaryString(currentAttributeSet)), data);
-                if (attributeSetQuality > bestAttributeSetQuality) {
-                    bestAttributeSetQuality = attributeSetQuality;
-                    bestAttributeSet = currentAttributeSet;
-                }
-                printProgress(currentAttributeSet - noAttributesValue, totalAttributeSetCount, bestAttributeSetQuality);
-            }
+            System.out.println("Starting brute-force algorithm with " + pool.getParallelism() + " workers");
+            BruteForceSearchTask.Progress progress = new BruteForceSearchTask.Progress(totalAttributeSetCount);
+            AttributeSetQuality best = pool.invoke(new BruteForceSearchTask(projection, noAttributesValue + 1, allAttributesValue, progress));
+            System.out.println();
+            printAttributeSet(data, best.getAttributeSet(), best.getQuality());
+        } catch (final Exception e) {
+            System.out.println("Incorrect decision tree usage");
+            e.printStackTrace();
+        }
+    }
+
+    private static void processBranchAndBoundAlgorithm(final AttributeProjection projection) {
+        try {
+            int size = Integer.getInteger(SUBSET_SIZE_PROPERTY, (projection.getData().numAttributes() - 1) / 2);
+            System.out.println("Starting branch and bound algorithm for " + size + " attributes");
+            SearchBudget budget = SearchBudget.fromProperties();
+            AttributeSetQuality best = new BranchAndBoundSearch(projection, budget, size).search();
+            printSearchResult(projection.getData(), budget, best);
+        } catch (final Exception e) {
+            System.out.println("Incorrect decision tree usage");
+            e.printStackTrace();
+        }
+    }
+
+    private static void processBeamAlgorithm(final AttributeProjection projection) {
+        try {
+            int width = Integer.getInteger(BEAM_WIDTH_PROPERTY, DEFAULT_BEAM_WIDTH);
+            System.out.println("Starting beam algorithm with beam width " + width);
+            SearchBudget budget = SearchBudget.fromProperties();
+            AttributeSetQuality best = new BeamSearch(projection, budget, width).search();
+            printSearchResult(projection.getData(), budget, best);
+        } catch (final Exception e) {
+            System.out.println("Incorrect decision tree usage");
+            e.printStackTrace();
+        }
+    }
+
+    private static void processBackwardEliminationAlgorithm(final EvaluationRound round) {
+        try {
+            System.out.println("Starting sequential attribute removing algorithm");
+            AttributeSetQuality best = new SequentialSelection(round).backwardElimination();
             System.out.println();
-            printAttributeSet(data, Long.toBinaryString(bestAttributeSet), bestAttributeSetQuality);
+            printAttributeSet(round.getProjection().getData(), best.getAttributeSet(), best.getQuality());
         } catch (final Exception e) {
             System.out.println("Incorrect decision tree usage");
             e.printStackTrace();
         }
     }
 
-    private static void processSequentialAttributeAdditionAlgorithm(final Instances data) {
+    private static void processFloatingForwardSelectionAlgorithm(final EvaluationRound round) {
+        try {
+            System.out.println("Starting sequential floating attribute adding algorithm");
+            AttributeSetQuality best = new SequentialSelection(round).floatingForwardSelection();
+            System.out.println();
+            printAttributeSet(round.getProjection().getData(), best.getAttributeSet(), best.getQuality());
+        } catch (final Exception e) {
+            System.out.println("Incorrect decision tree usage");
+            e.printStackTrace();
+        }
+    }
+
+    private static void printSearchResult(final Instances data, final SearchBudget budget, final AttributeSetQuality best) {
+        System.out.println();
+        if (budget.isExhausted()) {
+            System.out.println("Search budget exhausted after " + budget.getEvaluations() + " evaluations, best attribute set so far:");
+        }
+        printAttributeSet(data, best.getAttributeSet(), best.getQuality());
+    }
+
+    private static void processSequentialAttributeAdditionAlgorithm(final EvaluationRound round) {
+        Instances data = round.getProjection().getData();
         LinkedList<Integer> selectedAttributesIndexes = new LinkedList<>();
         LinkedList<Double> selectedAttributesQuality = new LinkedList<>();
         ArrayList<Double> iteratingAttributesQuality = new ArrayList<>();
         ArrayList<Integer> iteratingAttributesIndexes = new ArrayList<>();
+        ArrayList<BitSet> iteratingAttributeSets = new ArrayList<>();
         try {
             System.out.println("Starting sequential attribute adding algorithm");
             while (true) {
                 iteratingAttributesQuality.clear();
                 iteratingAttributesIndexes.clear();
+                iteratingAttributeSets.clear();
                 for (int currentAttribute = 1; currentAttribute < data.numAttributes(); currentAttribute++) {
-                    String[] selectedAttributesOptions = getOptionsForFilteredAttributes(data.numAttributes(), currentAttribute, selectedAttributesIndexes);
-                    if (selectedAttributesOptions == null) {
+                    BitSet selectedAttributeSet = getFilteredAttributeSet(data.numAttributes(), currentAttribute, selectedAttributesIndexes);
+                    if (selectedAttributeSet == null) {
                         continue;
                     }
-                    double attributeSetQuality = getQualityForAttributeSet(selectedAttributesOptions, data);
-                    iteratingAttributesQuality.add(attributeSetQuality);
+                    iteratingAttributeSets.add(selectedAttributeSet);
                     iteratingAttributesIndexes.add(currentAttribute);
                 }
+                iteratingAttributesQuality.addAll(round.evaluate(iteratingAttributeSets));
                 if (iteratingAttributesQuality.isEmpty()) {
                     break;
                 }
@@ -103,23 +217,17 @@ public class Main {
         }
     }
 
-    private static String[] getOptionsForFilteredAttributes(final int classIndex, final int currentAttribute, final List<Integer> attributes) {
+    private static BitSet getFilteredAttributeSet(final int classIndex, final int currentAttribute, final List<Integer> attributes) {
         if (attributes.contains(currentAttribute)) {
             return null;
         }
-        String[] options = new String[3];
-        options[0] = "-R";
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append(classIndex);
-        stringBuilder.append(',');
-        stringBuilder.append(currentAttribute);
+        BitSet attributeSet = new BitSet(classIndex);
+        attributeSet.set(classIndex - 1);
+        attributeSet.set(currentAttribute - 1);
         for (final int attribute : attributes) {
-            stringBuilder.append(',');
-            stringBuilder.append(attribute);
+            attributeSet.set(attribute - 1);
         }
-        options[1] = stringBuilder.toString();
-        options[2] = "-V";
-        return options;
+        return attributeSet;
     }
 
     private static boolean qualityDecreased(final List<Double> iteratingAttributesQuality, final LinkedList<Double> selectedAttributesQuality, final int bestQualityAttributeIndex) {
@@ -127,49 +235,52 @@ public class Main {
     }
 
 
-    private static void printProgress(final double current, final double total, final double bestValue) {
+    static synchronized void printProgress(final double current, final double total, final double bestValue) {
         System.out.printf(Locale.ENGLISH, "\rCalculation progress: %10.7f with best attribute set quality: %5.2f", current / total * 100.0, bestValue);
     }
 
-    private static String[] getAttributesOptions(final String binaryInterpretation) {
-        String[] options = new String[3];
-        options[0] = "-R";
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int attributeIndex = binaryInterpretation.length() - 1; attributeIndex >= 0; attributeIndex--) {
-            char attribute = binaryInterpretation.charAt(binaryInterpretation.length() - attributeIndex - 1);
-            if (attribute == '1') {
-                stringBuilder.append(',');
-                stringBuilder.append(attributeIndex + 1);
-            }
-        }
-        options[1] = stringBuilder.substring(1);
-        options[2] = "-V";
-        return options;
+    static synchronized void printSearchProgress(final long evaluations, final double bestValue) {
+        System.out.printf(Locale.ENGLISH, "\rEvaluated attribute sets: %d with best attribute set quality: %5.2f", evaluations, bestValue);
     }
 
-    private static void printAttributeSet(final Instances data, final String binaryInterpretation, final double quality) {
-        for (int attributeIndex = 0; attributeIndex < binaryInterpretation.length() - 1; attributeIndex++) {
-            char attribute = binaryInterpretation.charAt(binaryInterpretation.length() - attributeIndex - 1);
-            if (attribute == '1') {
-                System.out.println(data.attribute(attributeIndex));
-            }
+    private static void printAttributeSet(final Instances data, final BitSet attributeSet, final double quality) {
+        for (int attributeIndex = attributeSet.nextSetBit(0); attributeIndex >= 0 && attributeIndex < data.classIndex(); attributeIndex = attributeSet.nextSetBit(attributeIndex + 1)) {
+            System.out.println(data.attribute(attributeIndex));
         }
         System.out.println("Quality: " + quality + '\n');
     }
 
-    private static double getQualityForAttributeSet(final String[] selectedAttributesOptions, final Instances data) throws Exception {
-        Remove remove = new Remove();
-        remove.setOptions(selectedAttributesOptions);
-        remove.setInputFormat(data);
-        Instances newData = Filter.useFilter(data, remove);
-        String[] options = new String[1];
-        options[0] = "-U";
-        J48graft tree = new J48graft();
-        tree.setOptions(options);
-        tree.buildClassifier(newData);
+    /**
+     * Number of correctly classified instances when the attribute set is cross-validated, looked
+     * up in the quality cache first.
+     */
+    static double getQualityForAttributeSet(final BitSet attributeSet, final AttributeProjection projection) throws Exception {
+        Double cachedQuality = qualityCache.get(attributeSet);
+        if (cachedQuality != null) {
+            return cachedQuality;
+        }
+        double quality = computeQualityForAttributeSet(projection, attributeSet);
+        qualityCache.put(attributeSet, quality);
+        return quality;
+    }
+
+    /**
+     * Cross-validates the attribute set bypassing the quality cache. Package-private only for
+     * {@code QualityBenchmark}, the searches go through
+     * {@link #getQualityForAttributeSet(BitSet, AttributeProjection)}.
+     */
+    static double computeQualityForAttributeSet(final AttributeProjection projection, final BitSet attributeSet) throws Exception {
+        Instances newData = projection.project(attributeSet);
         Evaluation eval = new Evaluation(newData);
-        eval.crossValidateModel(tree, newData, 10, new Random(1));
+        CrossValidation.crossValidateModel(eval, createClassifier(), projection, attributeSet);
         return eval.correct();
     }
 
+    private static J48graft createClassifier() throws Exception {
+        J48graft tree = new J48graft();
+        // setOptions consumes the options it recognizes
+        tree.setOptions(CLASSIFIER_OPTIONS.clone());
+        return tree;
+    }
+
 }
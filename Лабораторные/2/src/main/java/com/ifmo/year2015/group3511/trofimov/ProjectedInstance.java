@@ -0,0 +1,131 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import weka.core.Instance;
+
+/**
+ * Instance that reads its values through a column map from the values array of the source
+ * instance instead of owning a copy. The values are materialized only when the instance is
+ * modified or printed, like {@link Instance} itself does on write.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class ProjectedInstance extends Instance {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double[] source;
+    private final int[] columns;
+
+    ProjectedInstance(final double[] source, final int[] columns, final double weight) {
+        this.source = source;
+        this.columns = columns;
+        this.m_Weight = weight;
+    }
+
+    private ProjectedInstance(final ProjectedInstance instance) {
+        this(instance.source, instance.columns, instance.m_Weight);
+        this.m_AttValues = instance.m_AttValues;
+    }
+
+    private boolean isMaterialized() {
+        return m_AttValues != null;
+    }
+
+    private void materialize() {
+        if (!isMaterialized()) {
+            m_AttValues = toDoubleArray();
+        }
+    }
+
+    @Override
+    public Object copy() {
+        ProjectedInstance result = new ProjectedInstance(this);
+        result.m_Dataset = m_Dataset;
+        return result;
+    }
+
+    @Override
+    public double value(final int attIndex) {
+        return isMaterialized() ? super.value(attIndex) : source[columns[attIndex]];
+    }
+
+    @Override
+    public double valueSparse(final int indexOfIndex) {
+        return value(indexOfIndex);
+    }
+
+    @Override
+    public boolean isMissing(final int attIndex) {
+        return isMissingValue(value(attIndex));
+    }
+
+    @Override
+    public boolean isMissingSparse(final int indexOfIndex) {
+        return isMissing(indexOfIndex);
+    }
+
+    @Override
+    public int numAttributes() {
+        return columns.length;
+    }
+
+    @Override
+    public int numValues() {
+        return columns.length;
+    }
+
+    @Override
+    public double[] toDoubleArray() {
+        if (isMaterialized()) {
+            return super.toDoubleArray();
+        }
+        double[] values = new double[columns.length];
+        for (int attIndex = 0; attIndex < columns.length; attIndex++) {
+            values[attIndex] = source[columns[attIndex]];
+        }
+        return values;
+    }
+
+    @Override
+    public void setValue(final int attIndex, final double value) {
+        materialize();
+        super.setValue(attIndex, value);
+    }
+
+    @Override
+    public void setValueSparse(final int indexOfIndex, final double value) {
+        materialize();
+        super.setValueSparse(indexOfIndex, value);
+    }
+
+    @Override
+    public void replaceMissingValues(final double[] array) {
+        materialize();
+        super.replaceMissingValues(array);
+    }
+
+    @Override
+    public void deleteAttributeAt(final int position) {
+        materialize();
+        super.deleteAttributeAt(position);
+    }
+
+    @Override
+    public void insertAttributeAt(final int position) {
+        materialize();
+        super.insertAttributeAt(position);
+    }
+
+    @Override
+    public String toString() {
+        materialize();
+        return super.toString();
+    }
+
+    @Override
+    protected String toStringNoWeight() {
+        materialize();
+        return super.toStringNoWeight();
+    }
+
+}
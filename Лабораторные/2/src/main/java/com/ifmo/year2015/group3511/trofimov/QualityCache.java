@@ -0,0 +1,135 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import weka.classifiers.Classifier;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of attribute set qualities keyed by the attribute set bit mask.
+ * Every computed quality is also appended to a local file, so a re-run or a run after
+ * an interruption does not evaluate attribute sets that were already scored. The file
+ * starts with a fingerprint of the data set, the folds (their number and seed) and the
+ * classifier with its options, and is discarded when it does not match.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class QualityCache implements Closeable {
+
+    private static final int FORMAT_VERSION = 2;
+
+    private final Map<BitSet, Double> qualities;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final DataOutputStream output;
+
+    private QualityCache(final int maxSize, final DataOutputStream output) {
+        this.qualities = new LinkedHashMap<BitSet, Double>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<BitSet, Double> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.output = output;
+    }
+
+    static QualityCache inMemory(final int maxSize) {
+        return new QualityCache(maxSize, null);
+    }
+
+    static QualityCache open(final File file, final Instances data, final int numFolds, final long seed,
+                             final Classifier classifier, final int maxSize) throws IOException {
+        long fingerprint = fingerprint(data, numFolds, seed, classifier);
+        QualityCache loaded = inMemory(maxSize);
+        if (file.isFile()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (input.readInt() == FORMAT_VERSION && input.readLong() == fingerprint) {
+                    while (true) {
+                        long[] words = new long[input.readUnsignedShort()];
+                        for (int i = 0; i < words.length; i++) {
+                            words[i] = input.readLong();
+                        }
+                        loaded.qualities.put(BitSet.valueOf(words), input.readDouble());
+                    }
+                }
+            } catch (final EOFException ignored) {
+                // end of the file or a record truncated by an interrupted run
+            }
+        }
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        output.writeInt(FORMAT_VERSION);
+        output.writeLong(fingerprint);
+        QualityCache cache = new QualityCache(maxSize, output);
+        for (final Map.Entry<BitSet, Double> entry : loaded.qualities.entrySet()) {
+            cache.put(entry.getKey(), entry.getValue());
+        }
+        output.flush();
+        return cache;
+    }
+
+    Double get(final BitSet attributeSet) {
+        Double quality;
+        synchronized (qualities) {
+            quality = qualities.get(attributeSet);
+        }
+        (quality == null ? misses : hits).incrementAndGet();
+        return quality;
+    }
+
+    void put(final BitSet attributeSet, final double quality) throws IOException {
+        BitSet key = (BitSet) attributeSet.clone();
+        synchronized (qualities) {
+            qualities.put(key, quality);
+            if (output != null) {
+                long[] words = key.toLongArray();
+                output.writeShort(words.length);
+                for (final long word : words) {
+                    output.writeLong(word);
+                }
+                output.writeDouble(quality);
+                output.flush();
+            }
+        }
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (output != null) {
+            synchronized (qualities) {
+                output.close();
+            }
+        }
+    }
+
+    private static long fingerprint(final Instances data, final int numFolds, final long seed, final Classifier classifier) {
+        long fingerprint = data.numAttributes();
+        for (int attributeIndex = 0; attributeIndex < data.numAttributes(); attributeIndex++) {
+            fingerprint = 31 * fingerprint + data.attribute(attributeIndex).toString().hashCode();
+        }
+        for (int instanceIndex = 0; instanceIndex < data.numInstances(); instanceIndex++) {
+            Instance instance = data.instance(instanceIndex);
+            fingerprint = 31 * fingerprint + Arrays.hashCode(instance.toDoubleArray());
+        }
+        fingerprint = 31 * fingerprint + numFolds;
+        fingerprint = 31 * fingerprint + Long.hashCode(seed);
+        fingerprint = 31 * fingerprint + classifier.getClass().getName().hashCode();
+        fingerprint = 31 * fingerprint + Utils.joinOptions(classifier.getOptions()).hashCode();
+        return fingerprint;
+    }
+
+}
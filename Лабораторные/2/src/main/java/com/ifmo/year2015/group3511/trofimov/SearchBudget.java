@@ -0,0 +1,53 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of attribute set evaluations and the wall clock time of a search.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class SearchBudget {
+
+    private static final String EVALUATIONS_PROPERTY = "budget.evaluations";
+    private static final String SECONDS_PROPERTY = "budget.seconds";
+
+    private final long maxEvaluations;
+    private final long deadline;
+    private final AtomicLong evaluations = new AtomicLong();
+
+    SearchBudget(final long maxEvaluations, final long seconds) {
+        this.maxEvaluations = maxEvaluations;
+        this.deadline = seconds == Long.MAX_VALUE
+                ? Long.MAX_VALUE
+                : System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    static SearchBudget fromProperties() {
+        return new SearchBudget(Long.getLong(EVALUATIONS_PROPERTY, Long.MAX_VALUE), Long.getLong(SECONDS_PROPERTY, Long.MAX_VALUE));
+    }
+
+    /**
+     * Evaluates the attribute set and charges it to the budget.
+     */
+    AttributeSetQuality evaluate(final BitSet attributeSet, final AttributeProjection projection) {
+        try {
+            double quality = Main.getQualityForAttributeSet(attributeSet, projection);
+            evaluations.incrementAndGet();
+            return new AttributeSetQuality(attributeSet, quality);
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    boolean isExhausted() {
+        return evaluations.get() >= maxEvaluations || deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0;
+    }
+
+    long getEvaluations() {
+        return evaluations.get();
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.ifmo.year2015.group3511.trofimov;
+
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sequential backward elimination and sequential floating forward selection (SFFS) built on
+ * the parallel {@link EvaluationRound}.
+ *
+ * @author vladislav.trofimov@emc.com
+ */
+class SequentialSelection {
+
+    private final EvaluationRound round;
+    private final Instances data;
+
+    SequentialSelection(final EvaluationRound round) {
+        this.round = round;
+        this.data = round.getProjection().getData();
+    }
+
+    /**
+     * Starts from all the attributes and removes the attribute whose removal gives the best quality
+     * while the quality doesn't decrease.
+     */
+    AttributeSetQuality backwardElimination() throws Exception {
+        BitSet selected = new BitSet();
+        selected.set(0, data.numAttributes());
+        AttributeSetQuality current = new AttributeSetQuality(selected, Main.getQualityForAttributeSet(selected, round.getProjection()));
+        while (current.getAttributeSet().cardinality() > 2) {
+            AttributeSetQuality removal = bestRemoval(current.getAttributeSet());
+            if (removal.getQuality() < current.getQuality()) {
+                break;
+            }
+            System.out.println(data.attribute(changedAttribute(current, removal)) + " removed with total set quality " + removal.getQuality());
+            current = removal;
+        }
+        return current;
+    }
+
+    /**
+     * Adds the best attribute like the sequential attribute addition does and after every addition
+     * removes attributes while that gives a better quality than any set of the same size seen before.
+     */
+    AttributeSetQuality floatingForwardSelection() throws Exception {
+        Map<Integer, Double> bestQualityBySize = new HashMap<>();
+        BitSet classOnly = new BitSet();
+        classOnly.set(data.classIndex());
+        AttributeSetQuality current = new AttributeSetQuality(classOnly, Double.NEGATIVE_INFINITY);
+        AttributeSetQuality best = AttributeSetQuality.NONE;
+        while (current.getAttributeSet().cardinality() < data.numAttributes()) {
+            AttributeSetQuality addition = bestAddition(current.getAttributeSet());
+            if (addition.getQuality() < current.getQuality()) {
+                break;
+            }
+            System.out.println(data.attribute(changedAttribute(current, addition)) + " added with total set quality " + addition.getQuality());
+            current = addition;
+            bestQualityBySize.merge(current.getAttributeSet().cardinality(), current.getQuality(), Math::max);
+            best = AttributeSetQuality.best(best, current);
+            while (current.getAttributeSet().cardinality() > 2) {
+                AttributeSetQuality removal = bestRemoval(current.getAttributeSet());
+                Double bestQualityOfSize = bestQualityBySize.get(removal.getAttributeSet().cardinality());
+                if (bestQualityOfSize != null && removal.getQuality() <= bestQualityOfSize) {
+                    break;
+                }
+                System.out.println(data.attribute(changedAttribute(current, removal)) + " removed with total set quality " + removal.getQuality());
+                current = removal;
+                bestQualityBySize.put(current.getAttributeSet().cardinality(), current.getQuality());
+                best = AttributeSetQuality.best(best, current);
+            }
+        }
+        return best;
+    }
+
+    private AttributeSetQuality bestAddition(final BitSet attributeSet) throws Exception {
+        List<BitSet> candidates = new ArrayList<>();
+        for (int attributeIndex = attributeSet.nextClearBit(0); attributeIndex < data.numAttributes(); attributeIndex = attributeSet.nextClearBit(attributeIndex + 1)) {
+            BitSet candidate = (BitSet) attributeSet.clone();
+            candidate.set(attributeIndex);
+            candidates.add(candidate);
+        }
+        return bestCandidate(candidates);
+    }
+
+    private AttributeSetQuality bestRemoval(final BitSet attributeSet) throws Exception {
+        List<BitSet> candidates = new ArrayList<>();
+        for (int attributeIndex = attributeSet.nextSetBit(0); attributeIndex >= 0; attributeIndex = attributeSet.nextSetBit(attributeIndex + 1)) {
+            if (attributeIndex != data.classIndex()) {
+                BitSet candidate = (BitSet) attributeSet.clone();
+                candidate.clear(attributeIndex);
+                candidates.add(candidate);
+            }
+        }
+        return bestCandidate(candidates);
+    }
+
+    private AttributeSetQuality bestCandidate(final List<BitSet> candidates) throws Exception {
+        List<Double> qualities = round.evaluate(candidates);
+        int bestIndex = EvaluationRound.bestIndex(qualities);
+        return new AttributeSetQuality(candidates.get(bestIndex), qualities.get(bestIndex));
+    }
+
+    private static int changedAttribute(final AttributeSetQuality before, final AttributeSetQuality after) {
+        BitSet difference = (BitSet) before.getAttributeSet().clone();
+        difference.xor(after.getAttributeSet());
+        return difference.nextSetBit(0);
+    }
+
+}
@@ -0,0 +1,54 @@
+package ru.ifmo.cancerassemble;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Synthetic data sets for the benchmarks: numeric attributes drawn from a normal distribution
+ * and a two-valued class that depends on the first attributes plus noise, so that classifiers
+ * have something to learn.
+ */
+final class BenchmarkData {
+    private static final String[] CLASS_VALUES = {"positive", "negative"};
+    private static final int INFORMATIVE_ATTRIBUTES = 3;
+    private static final double NOISE = 0.5;
+
+    private BenchmarkData() {
+    }
+
+    static ColumnarData generate(
+            final int rows,
+            final int attributes,
+            final long seed) {
+        final Random random = new Random(seed);
+        final String[] names = new String[attributes + 1];
+        final String[][] dictionaries = new String[attributes + 1][];
+        final double[][] columns = new double[attributes + 1][rows];
+
+        for (int column = 0; column < attributes; column++) {
+            names[column] = "attribute" + column;
+            for (int row = 0; row < rows; row++) {
+                columns[column][row] = random.nextGaussian();
+            }
+        }
+
+        names[attributes] = "class";
+        dictionaries[attributes] = CLASS_VALUES;
+        for (int row = 0; row < rows; row++) {
+            double score = random.nextGaussian() * NOISE;
+            for (int column = 0; column < Math.min(INFORMATIVE_ATTRIBUTES, attributes); column++) {
+                score += columns[column][row];
+            }
+            columns[attributes][row] = score > 0 ? 0 : 1;
+        }
+
+        return new ColumnarData("generated-" + rows + "x" + attributes, names, dictionaries, columns, rows, 0, 0);
+    }
+
+    static void writeArff(final ColumnarData data, final Path path) throws IOException {
+        Files.write(path, data.toInstances().toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
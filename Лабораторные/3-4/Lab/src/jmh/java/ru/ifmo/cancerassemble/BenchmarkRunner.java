@@ -0,0 +1,122 @@
+package ru.ifmo.cancerassemble;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the benchmarks matching the given regular expressions (all of them by default), saves
+ * the results as a JSON baseline and compares them with a previous baseline when one is given.
+ * All benchmarks report average time, so a score above the baseline by more than the tolerance
+ * is reported as a regression.
+ */
+final class BenchmarkRunner {
+    private static final String OUTPUT_PROPERTY = "benchmark.output";
+    private static final String BASELINE_PROPERTY = "benchmark.baseline";
+    private static final String TOLERANCE_PROPERTY = "benchmark.tolerance";
+    private static final String DEFAULT_OUTPUT = "jmh-result.json";
+    private static final String DEFAULT_TOLERANCE = "0.1";
+    private static final String ALL_BENCHMARKS = ".*";
+
+    private static final Pattern RESULT_PATTERN = Pattern.compile(
+            "\"benchmark\"\\s*:\\s*\"([^\"]+)\"(.*?)\"primaryMetric\"\\s*:\\s*\\{\\s*\"score\"\\s*:\\s*\"?([^,\"\\s]+)",
+            Pattern.DOTALL);
+    private static final Pattern PARAMS_PATTERN = Pattern.compile("\"params\"\\s*:\\s*\\{([^}]*)}");
+    private static final Pattern PARAM_PATTERN = Pattern.compile("\"([^\"]+)\"\\s*:\\s*\"([^\"]*)\"");
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(final String[] args) throws RunnerException, IOException {
+        final String output = System.getProperty(OUTPUT_PROPERTY, DEFAULT_OUTPUT);
+        final String baseline = System.getProperty(BASELINE_PROPERTY, "");
+        final double tolerance = Double.parseDouble(System.getProperty(TOLERANCE_PROPERTY, DEFAULT_TOLERANCE));
+
+        final ChainedOptionsBuilder options = new OptionsBuilder()
+                .resultFormat(ResultFormatType.JSON)
+                .result(output);
+        if (args.length == 0) {
+            options.include(ALL_BENCHMARKS);
+        }
+        for (final String include : args) {
+            options.include(include);
+        }
+
+        final Collection<RunResult> results = new Runner(options.build()).run();
+        System.out.println("Results saved to " + output);
+
+        if (!baseline.isEmpty()) {
+            compare(results, readBaseline(Paths.get(baseline)), tolerance);
+        }
+    }
+
+    private static void compare(
+            final Collection<RunResult> results,
+            final Map<String, Double> baseline,
+            final double tolerance) {
+        int regressions = 0;
+
+        for (final RunResult result : results) {
+            final String key = getKey(result);
+            final Double previous = baseline.get(key);
+            if (previous == null) {
+                System.out.println(String.format(Locale.ENGLISH, "%-100s new", key));
+                continue;
+            }
+
+            final double ratio = result.getPrimaryResult().getScore() / previous;
+            final boolean regression = ratio > 1 + tolerance;
+            regressions += regression ? 1 : 0;
+            System.out.println(String.format(Locale.ENGLISH, "%-100s %6.2fx%s",
+                    key, ratio, regression ? " REGRESSION" : ""));
+        }
+
+        System.out.println(regressions + " regression(s) over " + Math.round(tolerance * 100) + "% tolerance");
+    }
+
+    private static String getKey(final RunResult result) {
+        final StringBuilder key = new StringBuilder(result.getParams().getBenchmark());
+        for (final String param : result.getParams().getParamsKeys()) {
+            key.append(' ').append(param).append('=').append(result.getParams().getParam(param));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Reads benchmark keys and primary scores from a JMH JSON result file.
+     */
+    private static Map<String, Double> readBaseline(final Path path) throws IOException {
+        final String json = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        final Map<String, Double> scores = new HashMap<>();
+
+        final Matcher result = RESULT_PATTERN.matcher(json);
+        while (result.find()) {
+            final StringBuilder key = new StringBuilder(result.group(1));
+            final Matcher params = PARAMS_PATTERN.matcher(result.group(2));
+            if (params.find()) {
+                final Matcher param = PARAM_PATTERN.matcher(params.group(1));
+                while (param.find()) {
+                    key.append(' ').append(param.group(1)).append('=').append(param.group(2));
+                }
+            }
+            scores.put(key.toString(), Double.parseDouble(result.group(3)));
+        }
+
+        return scores;
+    }
+}
@@ -0,0 +1,68 @@
+package ru.ifmo.cancerassemble;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import weka.classifiers.Classifier;
+import weka.core.Instances;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ten-fold cross-validation of every classifier of the panel, one at a time, on generated data
+ * sets of growing size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ClassifierBenchmark {
+    private static final int ATTRIBUTES = 20;
+    private static final long SEED = 1;
+    private static final int NUM_FOLDS = 10;
+
+    @Param({"AdaBoostM1", "BayesianLogisticRegression", "ConjunctiveRule", "DMNBtext", "DecisionStump",
+            "JRip", "LWL", "RBFNetwork", "REPTree", "RandomForest", "SimpleLogistic", "IBk", "VotedPerceptron"})
+    private String classifierName;
+
+    @Param({"200", "1000", "5000"})
+    private int rows;
+
+    private Classifier prototype;
+    private Instances data;
+    private FoldPartition folds;
+    private Classifier classifier;
+
+    @Setup(Level.Trial)
+    public void prepareData() {
+        prototype = Main.initializeClassifiers().stream()
+                .filter(candidate -> candidate.getClass().getSimpleName().equals(classifierName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown classifier " + classifierName));
+        data = BenchmarkData.generate(rows, ATTRIBUTES, SEED).toInstances();
+        folds = FoldPartition.create(data, NUM_FOLDS, new Random(SEED));
+    }
+
+    @Setup(Level.Invocation)
+    public void copyClassifier() throws Exception {
+        classifier = Classifier.makeCopy(prototype);
+    }
+
+    @Benchmark
+    public ClassificationResult crossValidate() {
+        return new ClassificationCallable(classifier, data, folds, FinalModel.SKIP, Budget.UNLIMITED,
+                EarlyStopping.NEVER, Runtime.getRuntime().availableProcessors()).call();
+    }
+}
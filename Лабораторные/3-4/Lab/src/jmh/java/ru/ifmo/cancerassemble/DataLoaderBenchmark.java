@@ -0,0 +1,79 @@
+package ru.ifmo.cancerassemble;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import weka.core.Instances;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Loading of generated ARFF files of growing size: the text parser, the binary columnar cache
+ * and the Weka parser the loader replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DataLoaderBenchmark {
+    private static final int ATTRIBUTES = 50;
+    private static final long SEED = 1;
+
+    @Param({"1000", "10000", "100000"})
+    private int rows;
+
+    private Path directory;
+    private Path file;
+
+    @Setup
+    public void writeFile() throws IOException {
+        directory = Files.createTempDirectory("loader-benchmark");
+        file = directory.resolve("data.arff");
+        BenchmarkData.writeArff(BenchmarkData.generate(rows, ATTRIBUTES, SEED), file);
+        ColumnarCache.load(file);
+    }
+
+    @TearDown
+    public void deleteFiles() throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            for (final Path path : (Iterable<Path>) files::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public ColumnarData parse() throws IOException {
+        return DataLoader.load(file);
+    }
+
+    @Benchmark
+    public ColumnarData loadCached() throws IOException {
+        return ColumnarCache.load(file);
+    }
+
+    @Benchmark
+    public Instances parseWithWeka() throws IOException {
+        try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return new Instances(reader);
+        }
+    }
+}
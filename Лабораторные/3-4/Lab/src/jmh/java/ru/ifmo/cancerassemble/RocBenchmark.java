@@ -0,0 +1,100 @@
+package ru.ifmo.cancerassemble;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import weka.classifiers.evaluation.NominalPrediction;
+import weka.classifiers.evaluation.ThresholdCurve;
+import weka.core.FastVector;
+import weka.core.Instances;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of ROC curve counts into the rates plotted on the chart, in full and downsampled
+ * to half a pixel, for curves of growing number of points, and computation of the curve and
+ * its area from as many predictions by {@link RocCurve} and by Weka.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RocBenchmark {
+    private static final long SEED = 1;
+    private static final double TOLERANCE = 0.5 / 1280;
+
+    @Param({"100", "10000", "1000000"})
+    private int points;
+
+    private ClassificationResult result;
+    private Predictions predictions;
+    private FastVector wekaPredictions;
+
+    @Setup
+    public void prepareCurve() {
+        final Random random = new Random(SEED);
+        final double[] truePositives = new double[points];
+        final double[] falsePositives = new double[points];
+
+        for (int i = 1; i < points; i++) {
+            truePositives[i] = truePositives[i - 1] + random.nextInt(2);
+            falsePositives[i] = falsePositives[i - 1] + random.nextInt(2);
+        }
+
+        result = new ClassificationResult(truePositives, 0, falsePositives, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                Collections.emptyMap(), 0, 0, null, null, false, null, null);
+
+        final double[] scores = new double[points];
+        final byte[] labels = new byte[points];
+        final byte[] decisions = new byte[points];
+        wekaPredictions = new FastVector(points);
+        for (int i = 0; i < points; i++) {
+            scores[i] = random.nextDouble();
+            labels[i] = random.nextDouble() < scores[i] ? Predictions.POSITIVE : Predictions.NEGATIVE;
+            decisions[i] = scores[i] > 0.5 ? Predictions.POSITIVE : Predictions.NEGATIVE;
+            wekaPredictions.addElement(new NominalPrediction(labels[i] == Predictions.POSITIVE ? 0 : 1,
+                    new double[]{scores[i], 1 - scores[i]}));
+        }
+        predictions = new Predictions(scores, labels, decisions);
+    }
+
+    @Benchmark
+    public double[][] toRates() {
+        return new double[][]{result.getFalsePositiveRates(), result.getTruePositiveRates()};
+    }
+
+    @Benchmark
+    public double[][] downsample() {
+        return RocDownsampler.downsample(result, TOLERANCE);
+    }
+
+    @Benchmark
+    public RocCurve rocCurve() {
+        return RocCurve.compute(predictions);
+    }
+
+    /**
+     * What {@link ClassificationCallable} used to do: a curve for the points and another one
+     * inside {@code Evaluation#areaUnderROC}.
+     */
+    @Benchmark
+    public double thresholdCurve() {
+        final Instances curve = new ThresholdCurve().getCurve(wekaPredictions, 0);
+        final double[] truePositives = curve.attributeToDoubleArray(curve.attribute("True Positives").index());
+        final double[] falsePositives = curve.attributeToDoubleArray(curve.attribute("False Positives").index());
+        return truePositives[0] + falsePositives[0]
+                + ThresholdCurve.getROCArea(new ThresholdCurve().getCurve(wekaPredictions, 0));
+    }
+}
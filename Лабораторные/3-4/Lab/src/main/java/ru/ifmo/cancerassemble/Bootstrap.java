@@ -0,0 +1,194 @@
+package ru.ifmo.cancerassemble;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Percentile bootstrap confidence intervals of the metrics of a result, estimated from resamples
+ * of its cross-validated {@link Predictions}, so nothing is trained again. The number of
+ * resamples and the level are read from the {@code bootstrap.resamples} and
+ * {@code bootstrap.level} system properties; zero resamples disable the intervals.
+ *
+ * <p>A resample picks predictions at random with replacement and only counts them by outcome
+ * and by rank, so no resample is sorted: the predictions are ranked by score once, ties sharing
+ * a rank like they share a point of {@link RocCurve}, and the AUC of a resample is the share of
+ * correctly ordered positive and negative pairs, counted rank by rank. The rank, the label and
+ * the decision of a prediction are packed into a single int, so a pick is one random load.
+ * Resamples are split into a fixed number of chunks run as fork-join tasks, every chunk with its
+ * own generator split off the seeded one, so the intervals don't depend on the number of threads.
+ */
+final class Bootstrap {
+    private static final String RESAMPLES_PROPERTY = "bootstrap.resamples";
+    private static final String LEVEL_PROPERTY = "bootstrap.level";
+    private static final int DEFAULT_RESAMPLES = 2000;
+    private static final double DEFAULT_LEVEL = 0.95;
+    private static final int CHUNKS = 64;
+
+    private static final int AUC = 0;
+    private static final int TPR = 1;
+    private static final int TNR = 2;
+    private static final int MCC = 3;
+    private static final int METRICS = 4;
+
+    private static final int POSITIVE_BIT = 4;
+    private static final int DECIDED_POSITIVE = 1;
+    private static final int UNCLASSIFIED = 2;
+    private static final int OUTCOME_BITS = 3;
+    private static final int OUTCOME_MASK = (1 << OUTCOME_BITS) - 1;
+
+    private final int resamples;
+    private final double level;
+    private final long seed;
+
+    private Bootstrap(final int resamples, final double level, final long seed) {
+        this.resamples = resamples;
+        this.level = level;
+        this.seed = seed;
+    }
+
+    static Bootstrap fromSystemProperties(final long seed) {
+        final double level = Double.parseDouble(System.getProperty(LEVEL_PROPERTY, Double.toString(DEFAULT_LEVEL)));
+        if (level <= 0 || level >= 1) {
+            throw new IllegalArgumentException("Confidence level must be between 0 and 1: " + level);
+        }
+        return new Bootstrap(Math.max(0, Integer.getInteger(RESAMPLES_PROPERTY, DEFAULT_RESAMPLES)), level, seed);
+    }
+
+    /**
+     * Intervals of the metrics of the predictions, with the resampling tasks tracked by the given
+     * recorder, or {@code null} when there are no resamples or no predictions.
+     */
+    ConfidenceIntervals estimate(final Predictions predictions, final PhaseRecorder recorder) {
+        if (resamples == 0 || predictions == null || predictions.size() == 0) {
+            return null;
+        }
+
+        final int[] ranks = rank(predictions.getScores());
+        final int numRanks = Arrays.stream(ranks).max().getAsInt() + 1;
+        final int[] codes = encode(predictions, ranks);
+        final double[][] metrics = new double[METRICS][resamples];
+
+        final SplittableRandom random = new SplittableRandom(seed);
+        final int chunks = Math.min(CHUNKS, resamples);
+        final List<ForkJoinTask<Void>> tasks = new ArrayList<>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            final int from = (int) ((long) resamples * chunk / chunks);
+            final int to = (int) ((long) resamples * (chunk + 1) / chunks);
+            final SplittableRandom chunkRandom = random.split();
+            tasks.add(ForkJoinTask.adapt(recorder.track(() -> {
+                resample(codes, numRanks, chunkRandom, metrics, from, to);
+                return null;
+            })));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        return new ConfidenceIntervals(level,
+                interval(metrics[AUC]), interval(metrics[TPR]), interval(metrics[TNR]), interval(metrics[MCC]));
+    }
+
+    /**
+     * Rank of every score among the distinct scores, from 0 for the lowest. A score not greater
+     * than the previous one in the sorted order shares its rank, which puts -0.0 and 0.0 (and
+     * NaN) together like in {@link RocCurve}.
+     */
+    private static int[] rank(final double[] scores) {
+        final double[] sorted = scores.clone();
+        Arrays.sort(sorted);
+
+        final int[] sortedRanks = new int[sorted.length];
+        for (int i = 1; i < sorted.length; i++) {
+            sortedRanks[i] = sorted[i] > sorted[i - 1] ? sortedRanks[i - 1] + 1 : sortedRanks[i - 1];
+        }
+
+        final int[] ranks = new int[scores.length];
+        for (int i = 0; i < scores.length; i++) {
+            // equal scores lie next to each other and have the same rank, whichever is found
+            ranks[i] = sortedRanks[Arrays.binarySearch(sorted, scores[i])];
+        }
+        return ranks;
+    }
+
+    /**
+     * Rank of every prediction followed by its outcome bits: whether it is positive, and whether
+     * it was decided positive or left unclassified.
+     */
+    private static int[] encode(final Predictions predictions, final int[] ranks) {
+        final byte[] labels = predictions.getLabels();
+        final byte[] decisions = predictions.getDecisions();
+        final int[] codes = new int[ranks.length];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = ranks[i] << OUTCOME_BITS
+                    | (labels[i] == Predictions.POSITIVE ? POSITIVE_BIT : 0)
+                    | (decisions[i] == Predictions.POSITIVE ? DECIDED_POSITIVE : 0)
+                    | (decisions[i] == Predictions.UNCLASSIFIED ? UNCLASSIFIED : 0);
+        }
+        return codes;
+    }
+
+    private static void resample(
+            final int[] codes,
+            final int numRanks,
+            final SplittableRandom random,
+            final double[][] metrics,
+            final int from,
+            final int to) {
+        final int size = codes.length;
+        // negatives and positives of every rank, interleaved
+        final int[] rankCounts = new int[2 * numRanks];
+        final int[] outcomes = new int[1 << OUTCOME_BITS];
+
+        for (int resample = from; resample < to; resample++) {
+            Arrays.fill(rankCounts, 0);
+            Arrays.fill(outcomes, 0);
+
+            for (int i = 0; i < size; i++) {
+                final int code = codes[random.nextInt(size)];
+                rankCounts[code >>> (OUTCOME_BITS - 1)]++;
+                outcomes[code & OUTCOME_MASK]++;
+            }
+
+            // positives ranked above negatives, ties counting half
+            double pairs = 0;
+            long negativesBelow = 0;
+            for (int rank = 0; rank < numRanks; rank++) {
+                final int negatives = rankCounts[2 * rank];
+                pairs += rankCounts[2 * rank + 1] * (negativesBelow + 0.5 * negatives);
+                negativesBelow += negatives;
+            }
+            final long numNegatives = negativesBelow;
+            final long numPositives = size - numNegatives;
+            final long tp = outcomes[POSITIVE_BIT | DECIDED_POSITIVE];
+            final long fn = outcomes[POSITIVE_BIT];
+            final long fp = outcomes[DECIDED_POSITIVE];
+            final long tn = outcomes[0];
+
+            metrics[AUC][resample] = pairs / ((double) numPositives * numNegatives);
+            metrics[TPR][resample] = tp + fn == 0 ? 0 : (double) tp / (tp + fn);
+            metrics[TNR][resample] = tn + fp == 0 ? 0 : (double) tn / (tn + fp);
+            metrics[MCC][resample] = ClassificationResult.matthewsCorrelationCoefficient(tp, tn, fp, fn);
+        }
+    }
+
+    /**
+     * Percentile interval of the values of a metric, leaving out the resamples where it is
+     * undefined.
+     */
+    private ConfidenceIntervals.Interval interval(final double[] values) {
+        Arrays.sort(values);
+        int defined = values.length;
+        while (defined > 0 && Double.isNaN(values[defined - 1])) {
+            defined--;
+        }
+        if (defined == 0) {
+            return new ConfidenceIntervals.Interval(Double.NaN, Double.NaN);
+        }
+
+        final double tail = (1 - level) / 2;
+        return new ConfidenceIntervals.Interval(
+                values[(int) Math.floor(tail * (defined - 1))],
+                values[(int) Math.ceil((1 - tail) * (defined - 1))]);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.ifmo.cancerassemble;
+
+import lombok.Value;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and allocation limits of a single classifier run. Limits are read from the
+ * {@code classifier.time.budget} (seconds) and {@code classifier.memory.budget} (megabytes
+ * allocated) system properties, which can be overridden per classifier by appending its simple
+ * class name, e.g. {@code -Dclassifier.time.budget.LWL=30}. Allocation is used as the memory
+ * measure because it is the only one that can be attributed to a single task on a shared heap.
+ * Time is counted from the start of the first fold, so waiting for a thread doesn't use it up.
+ * A run with a budget is made in a JVM of its own, see {@link IsolatedClassification}, which
+ * exits once the budget is exceeded and takes the folds still training down with it.
+ */
+@Value
+class Budget implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final Budget UNLIMITED = new Budget(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private static final String TIME_BUDGET_PROPERTY = "classifier.time.budget";
+    private static final String MEMORY_BUDGET_PROPERTY = "classifier.memory.budget";
+
+    long timeNanos;
+    long allocatedBytes;
+
+    static Budget forClassifier(final String classifierName) {
+        final String seconds = getProperty(TIME_BUDGET_PROPERTY, classifierName);
+        final String megabytes = getProperty(MEMORY_BUDGET_PROPERTY, classifierName);
+
+        return new Budget(
+                seconds == null ? Long.MAX_VALUE : (long) (Double.parseDouble(seconds) * TimeUnit.SECONDS.toNanos(1)),
+                megabytes == null ? Long.MAX_VALUE : (long) (Double.parseDouble(megabytes) * (1 << 20)));
+    }
+
+    boolean isUnlimited() {
+        return timeNanos == Long.MAX_VALUE && allocatedBytes == Long.MAX_VALUE;
+    }
+
+    boolean isExceeded(final long elapsedNanos, final long allocated) {
+        return elapsedNanos > timeNanos || allocated > allocatedBytes;
+    }
+
+    private static String getProperty(final String property, final String classifierName) {
+        return System.getProperty(property + '.' + classifierName, System.getProperty(property));
+    }
+}
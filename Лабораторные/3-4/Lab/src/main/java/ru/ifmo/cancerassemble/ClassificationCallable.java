@@ -1,56 +1,127 @@
 package ru.ifmo.cancerassemble;
 
 import weka.classifiers.Classifier;
-import weka.classifiers.Evaluation;
-import weka.classifiers.evaluation.ThresholdCurve;
 import weka.core.Instances;
 
-import java.util.Random;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
 
 class ClassificationCallable implements Callable<ClassificationResult> {
-    private static final int CLASS_INDEX = 0;
-    private static final Random RANDOM = new Random();
+    static final int CLASS_INDEX = 0;
 
     private final Classifier classifier;
     private final Instances data;
-    private final Evaluation evaluation;
+    private final Budget budget;
+    private final EarlyStopping earlyStopping;
+    private final FoldPartition folds;
+    private final FinalModel finalModelMode;
+    private final int parallelism;
+    private final long submitTime;
 
-    ClassificationCallable(final Classifier classifier, final Instances data) {
+    /**
+     * Runs cross-validation of the classifier on the shared folds within the budget: when the
+     * budget is exceeded or the run is stopped early, the result covers the folds completed by
+     * then and is marked as timed out. The model on the whole data set is trained only when asked
+     * to, see {@link FinalModel}. Should be created right before the task is submitted: the time
+     * between construction and {@link #call()} is reported as the queue time of the classifier.
+     *
+     * <p>Every run has a fork-join pool of its own for its folds, with the given parallelism, and
+     * for the model on the whole data set, with another thread for it. The pool is shut down when
+     * the run returns, but Weka classifiers ignore interrupts: a fold or a model that is still
+     * training when the budget runs out or the run is stopped early keeps its thread until it
+     * finishes. Such runs are made in a JVM of their own, see {@link IsolatedClassification}, that
+     * exits right after the run returns.
+     */
+    ClassificationCallable(
+            final Classifier classifier,
+            final Instances data,
+            final FoldPartition folds,
+            final FinalModel finalModelMode,
+            final Budget budget,
+            final EarlyStopping earlyStopping,
+            final int parallelism) {
         this.classifier = classifier;
         this.data = data;
-
-        try {
-            this.evaluation = new Evaluation(data);
-        } catch (Exception e) {
-            throw new IllegalArgumentException(e);
-        }
+        this.folds = folds;
+        this.finalModelMode = finalModelMode;
+        this.budget = budget;
+        this.earlyStopping = earlyStopping;
+        this.parallelism = parallelism;
+        this.submitTime = System.nanoTime();
     }
 
     @Override
     public ClassificationResult call() {
+        final ForkJoinPool pool = new ForkJoinPool(finalModelMode == FinalModel.CONCURRENT
+                ? parallelism + 1
+                : parallelism);
         try {
-            final long before = System.currentTimeMillis();
-            classifier.buildClassifier(data);
-            evaluation.crossValidateModel(classifier, data, 10, RANDOM);
-            final long after = System.currentTimeMillis();
-
-            final ThresholdCurve thresholdCurve = new ThresholdCurve();
-            final Instances curve = thresholdCurve.getCurve(evaluation.predictions(), CLASS_INDEX);
-
-            final double[] tp = curve.attributeToDoubleArray(curve.attribute("True Positives").index());
-            final double tpc = evaluation.numTruePositives(CLASS_INDEX);
-            final double fnc = evaluation.numFalseNegatives(CLASS_INDEX);
-            final double[] fp = curve.attributeToDoubleArray(curve.attribute("False Positives").index());
-            final double fpc = evaluation.numFalsePositives(CLASS_INDEX);
-            final double tnc = evaluation.numTrueNegatives(CLASS_INDEX);
-            final double auc = evaluation.areaUnderROC(CLASS_INDEX);
-            final double tnr = evaluation.trueNegativeRate(CLASS_INDEX);
-            final double tpr = evaluation.truePositiveRate(CLASS_INDEX);
-
-            return new ClassificationResult(tp, tpc, fp, fpc, fnc, tnc, tnr, tpr, auc, after - before, classifier);
+            final long queueTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitTime);
+            final PhaseRecorder recorder = new PhaseRecorder();
+
+            final Classifier finalModel = finalModelMode == FinalModel.CONCURRENT
+                    ? Classifier.makeCopy(classifier)
+                    : null;
+            final ForkJoinTask<PhaseMetrics> finalTraining = finalModel == null
+                    ? null
+                    : pool.submit(() -> trainFinalModel(finalModel));
+
+            final CrossValidation.Outcome outcome = CrossValidation.crossValidateModel(classifier,
+                    folds, pool, recorder, budget, earlyStopping);
+            final int completedFolds = outcome.getCompletedFolds();
+            final boolean finalModelTrained = finalTraining != null && completedFolds == folds.getNumFolds();
+            if (finalModelTrained) {
+                recorder.record(Phase.TRAINING, finalTraining.join());
+            } else if (finalTraining != null) {
+                finalTraining.cancel(false);
+            }
+            recorder.finish(Phase.CROSS_VALIDATION);
+            final long executionTime = TimeUnit.NANOSECONDS.toMillis(recorder.getElapsedNanos());
+
+            final RocCurve curve = RocCurve.compute(outcome.getPredictions());
+            recorder.finish(Phase.THRESHOLD_CURVE);
+
+            final double tnr = curve.getTrueNegativeRate();
+            final double tpr = curve.getTruePositiveRate();
+            recorder.finish(Phase.METRICS);
+
+            final Map<Phase, PhaseMetrics> phases = recorder.getPhases();
+            final long savedTime = TimeUnit.NANOSECONDS.toMillis(finalModelTrained
+                    ? phases.get(Phase.TRAINING).getWallNanos()
+                    : estimateFinalTraining(outcome));
+
+            return new ClassificationResult(curve.getTruePositives(), curve.getTruePositivesCount(),
+                    curve.getFalsePositives(), curve.getFalsePositivesCount(), curve.getFalseNegativesCount(),
+                    curve.getTrueNegativesCount(), tnr, tpr, curve.getAreaUnderCurve(), queueTime,
+                    executionTime, savedTime, phases, completedFolds, folds.getNumFolds(), classifier,
+                    finalModelTrained ? finalModel : null, false, outcome.getPredictions(), null);
         } catch (Exception e) {
             throw new IllegalStateException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private PhaseMetrics trainFinalModel(final Classifier model) throws Exception {
+        final PhaseRecorder recorder = new PhaseRecorder();
+        model.buildClassifier(data);
+        recorder.finish(Phase.TRAINING);
+        return recorder.getPhases().get(Phase.TRAINING);
+    }
+
+    /**
+     * Time the sequential training on the whole data set would have taken, assuming training time
+     * grows linearly with the training set: the mean fold training time scaled by the ratio of the
+     * data set size to the fold training set size.
+     */
+    private long estimateFinalTraining(final CrossValidation.Outcome outcome) {
+        if (outcome.getCompletedFolds() == 0) {
+            return 0;
         }
+        final int numFolds = folds.getNumFolds();
+        return outcome.getTrainingNanos() / outcome.getCompletedFolds() * numFolds / (numFolds - 1);
     }
 }
@@ -1,10 +1,18 @@
 package ru.ifmo.cancerassemble;
 
+import com.google.common.primitives.Doubles;
 import lombok.Value;
 import weka.classifiers.Classifier;
 
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
 @Value
-class ClassificationResult {
+class ClassificationResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     double[] truePositives;
     double truePositivesCount;
     double[] falsePositives;
@@ -14,10 +22,144 @@ class ClassificationResult {
     double trueNegativesRate;
     double truePositivesRate;
     double areaUnderCurve;
+    long queueTime;
     long executionTime;
+    /**
+     * Milliseconds the separate training on the whole data set would have added to the execution
+     * time: measured when the final model was trained concurrently, estimated otherwise.
+     */
+    long savedTime;
+    Map<Phase, PhaseMetrics> phases;
+    int completedFolds;
+    int numFolds;
     Classifier classifier;
+    /**
+     * Classifier trained on the whole data set, or {@code null} when it wasn't trained.
+     */
+    Classifier model;
+    /**
+     * Whether the result was loaded from the {@link ResultCache} instead of being computed.
+     */
+    boolean cached;
+    /**
+     * Cross-validated predictions the metrics were computed from.
+     */
+    Predictions predictions;
+    /**
+     * Bootstrap confidence intervals of the metrics, or {@code null} when they weren't estimated.
+     */
+    ConfidenceIntervals intervals;
+
+    /**
+     * Copy of a result loaded from the cache, attached to the given instance of its classifier.
+     */
+    ClassificationResult fromCache(final Classifier classifier) {
+        return new ClassificationResult(truePositives, truePositivesCount, falsePositives, falsePositivesCount,
+                falseNegativesCount, trueNegativesCount, trueNegativesRate, truePositivesRate, areaUnderCurve,
+                queueTime, executionTime, savedTime, phases, completedFolds, numFolds, classifier, model, true,
+                predictions, intervals);
+    }
+
+    /**
+     * Copy of the result with the confidence intervals estimated in the given bootstrap phase.
+     */
+    ClassificationResult withIntervals(final ConfidenceIntervals intervals, final PhaseMetrics bootstrap) {
+        final Map<Phase, PhaseMetrics> withBootstrap = new EnumMap<>(Phase.class);
+        withBootstrap.putAll(phases);
+        withBootstrap.put(Phase.BOOTSTRAP, bootstrap);
+        return new ClassificationResult(truePositives, truePositivesCount, falsePositives, falsePositivesCount,
+                falseNegativesCount, trueNegativesCount, trueNegativesRate, truePositivesRate, areaUnderCurve,
+                queueTime, executionTime, savedTime, withBootstrap, completedFolds, numFolds, classifier, model,
+                cached, predictions, intervals);
+    }
+
+    /**
+     * Copy of a result computed in a child JVM, see {@link IsolatedClassification}, attached to
+     * the given instance of its classifier and with the given queue time.
+     */
+    ClassificationResult fromIsolatedRun(final Classifier classifier, final long queueTime) {
+        return new ClassificationResult(truePositives, truePositivesCount, falsePositives, falsePositivesCount,
+                falseNegativesCount, trueNegativesCount, trueNegativesRate, truePositivesRate, areaUnderCurve,
+                queueTime, executionTime, savedTime, phases, completedFolds, numFolds, classifier, model, cached,
+                predictions, intervals);
+    }
+
+    /**
+     * Result of a run that was killed before it completed a single fold.
+     */
+    static ClassificationResult killed(
+            final Classifier classifier,
+            final int numFolds,
+            final long queueTime,
+            final long executionTime) {
+        final Predictions predictions = Predictions.concat(Collections.emptyList());
+        final RocCurve curve = RocCurve.compute(predictions);
+        return new ClassificationResult(curve.getTruePositives(), curve.getTruePositivesCount(),
+                curve.getFalsePositives(), curve.getFalsePositivesCount(), curve.getFalseNegativesCount(),
+                curve.getTrueNegativesCount(), curve.getTrueNegativeRate(), curve.getTruePositiveRate(),
+                curve.getAreaUnderCurve(), queueTime, executionTime, 0, new EnumMap<>(Phase.class), 0, numFolds,
+                classifier, null, false, predictions, null);
+    }
+
+    /**
+     * Whether the run exceeded its budget, in which case the metrics cover only the completed
+     * folds.
+     */
+    boolean isTimedOut() {
+        return completedFolds < numFolds;
+    }
+
+    PhaseMetrics getPhase(final Phase phase) {
+        return phases.getOrDefault(phase, PhaseMetrics.ZERO);
+    }
+
+    /**
+     * Resources spent in all phases together.
+     */
+    PhaseMetrics getTotal() {
+        return phases.values().stream().reduce(PhaseMetrics.ZERO, PhaseMetrics::plus);
+    }
+
+    /**
+     * False positive rates of the ROC curve points, from the lowest threshold to the highest.
+     */
+    double[] getFalsePositiveRates() {
+        return toRates(falsePositives);
+    }
+
+    /**
+     * True positive rates of the ROC curve points, in the order of {@link #getFalsePositiveRates()}.
+     */
+    double[] getTruePositiveRates() {
+        return toRates(truePositives);
+    }
+
+    private static double[] toRates(final double[] counts) {
+        final int n = counts.length;
+        if (n == 0) {
+            return counts;
+        }
+
+        final double max = Doubles.max(counts);
+        final double[] result = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            result[i] = counts[n - i - 1] / max;
+        }
+
+        return result;
+    }
 
     double getMatthewsCorrelationCoefficient() {
+        return matthewsCorrelationCoefficient(truePositivesCount, trueNegativesCount,
+                falsePositivesCount, falseNegativesCount);
+    }
+
+    static double matthewsCorrelationCoefficient(
+            final double truePositivesCount,
+            final double trueNegativesCount,
+            final double falsePositivesCount,
+            final double falseNegativesCount) {
         return (truePositivesCount * trueNegativesCount -
                 falsePositivesCount * falseNegativesCount) /
                 Math.sqrt((truePositivesCount + falsePositivesCount) *
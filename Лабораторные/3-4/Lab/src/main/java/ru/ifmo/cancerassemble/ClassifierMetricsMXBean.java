@@ -0,0 +1,16 @@
+package ru.ifmo.cancerassemble;
+
+import java.util.Map;
+
+/**
+ * JMX view of the last result of a classifier, registered by {@link MetricsRegistry}.
+ */
+public interface ClassifierMetricsMXBean {
+    String getClassifier();
+
+    /**
+     * Queue and execution time in milliseconds, then wall and CPU time in milliseconds and
+     * allocated bytes of every phase, keyed like {@code crossValidation.cpuMillis}.
+     */
+    Map<String, Long> getMetrics();
+}
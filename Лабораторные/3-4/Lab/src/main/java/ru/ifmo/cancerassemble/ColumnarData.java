@@ -0,0 +1,70 @@
+package ru.ifmo.cancerassemble;
+
+import lombok.Value;
+import weka.core.Attribute;
+import weka.core.FastVector;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Data set stored column by column in primitive arrays. Nominal values are encoded as indexes
+ * into the dictionary of their column, missing values are {@link Double#NaN}, exactly as Weka
+ * stores them, so rows can be handed to Weka without conversion.
+ */
+@Value
+class ColumnarData {
+    String relationName;
+    String[] attributeNames;
+    /**
+     * Dictionary of every nominal column, {@code null} for numeric columns.
+     */
+    String[][] dictionaries;
+    double[][] columns;
+    int numRows;
+    long sourceBytes;
+    long loadTimeNanos;
+
+    int numColumns() {
+        return columns.length;
+    }
+
+    boolean isNominal(final int column) {
+        return dictionaries[column] != null;
+    }
+
+    double getThroughput() {
+        return sourceBytes / (loadTimeNanos / 1e9) / (1 << 20);
+    }
+
+    /**
+     * Builds Weka {@link Instances} with the last column as the class for the code that works with
+     * Weka data sets. Every row is materialized once here.
+     */
+    Instances toInstances() {
+        final FastVector attributes = new FastVector(numColumns());
+
+        for (int column = 0; column < numColumns(); column++) {
+            if (isNominal(column)) {
+                final FastVector values = new FastVector(dictionaries[column].length);
+                for (final String value : dictionaries[column]) {
+                    values.addElement(value);
+                }
+                attributes.addElement(new Attribute(attributeNames[column], values));
+            } else {
+                attributes.addElement(new Attribute(attributeNames[column]));
+            }
+        }
+
+        final Instances instances = new Instances(relationName, attributes, numRows);
+        for (int row = 0; row < numRows; row++) {
+            final double[] values = new double[numColumns()];
+            for (int column = 0; column < numColumns(); column++) {
+                values[column] = columns[column][row];
+            }
+            instances.add(new Instance(1.0, values));
+        }
+        instances.setClassIndex(numColumns() - 1);
+
+        return instances;
+    }
+}
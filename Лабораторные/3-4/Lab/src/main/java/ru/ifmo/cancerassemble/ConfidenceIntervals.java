@@ -0,0 +1,32 @@
+package ru.ifmo.cancerassemble;
+
+import lombok.Value;
+
+import java.io.Serializable;
+
+/**
+ * Confidence intervals of the metrics of a classification result at a common level, estimated
+ * by {@link Bootstrap}.
+ */
+@Value
+class ConfidenceIntervals implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    double level;
+    Interval areaUnderCurve;
+    Interval truePositivesRate;
+    Interval trueNegativesRate;
+    Interval matthewsCorrelationCoefficient;
+
+    /**
+     * Interval between two bounds, which are {@code NaN} when the metric is undefined in (almost)
+     * every resample.
+     */
+    @Value
+    static class Interval implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        double lower;
+        double upper;
+    }
+}
@@ -0,0 +1,176 @@
+package ru.ifmo.cancerassemble;
+
+import lombok.Value;
+import weka.classifiers.Classifier;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parallel replacement of {@link weka.classifiers.Evaluation#crossValidateModel}. Folds are built
+ * exactly like Weka builds them (see {@link FoldPartition}), then every fold trains its own copy
+ * of the classifier and predicts its test instances as a separate fork-join task. The predictions
+ * are returned as primitive {@link Predictions} in fold order, the order the sequential
+ * cross-validation records them in, and {@link RocCurve} turns them into the same curve and
+ * metrics Weka computes.
+ *
+ * <p>The fold tasks run on a pool of their own, given by the caller. A run can be limited by a
+ * {@link Budget}, whose time is counted from the start of the first fold. Once the budget is
+ * exceeded, folds that haven't started are cancelled, and only the predictions of the completed
+ * folds are returned. Weka classifiers can't be interrupted, so a fold still training keeps
+ * its thread until it finishes or the JVM exits, see {@link IsolatedClassification}, but its
+ * result is discarded.
+ *
+ * <p>A run can also be stopped early, see {@link EarlyStopping}: every time another fold
+ * completes, the predictions of the completed folds are evaluated on their own, and the remaining
+ * folds are cancelled just like on an exceeded budget once their AUC is clearly too low.
+ */
+final class CrossValidation {
+    private static final long POLL_INTERVAL_MILLIS = 50;
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private CrossValidation() {
+    }
+
+    /**
+     * Cross-validates the classifier on precomputed folds, with the fold tasks run on the given
+     * pool, tracked by the given recorder and stopped when the budget is exceeded or early
+     * stopping says so.
+     *
+     * @return number of completed folds, the time their models took to train and their predictions
+     */
+    static Outcome crossValidateModel(
+            final Classifier classifier,
+            final FoldPartition folds,
+            final ForkJoinPool pool,
+            final PhaseRecorder recorder,
+            final Budget budget,
+            final EarlyStopping earlyStopping) throws Exception {
+        final int numFolds = folds.getNumFolds();
+        final List<ForkJoinTask<double[][]>> tasks = new ArrayList<>(numFolds);
+        final long[] trainingNanos = new long[numFolds];
+        final AtomicLong started = new AtomicLong(NOT_STARTED);
+
+        for (int fold = 0; fold < numFolds; fold++) {
+            final Instances train = folds.getTrain(fold);
+            final Instances test = folds.getTest(fold);
+            final int foldIndex = fold;
+            tasks.add(ForkJoinTask.adapt(recorder.track(() -> {
+                started.compareAndSet(NOT_STARTED, System.nanoTime());
+                return predictFold(classifier, train, test, trainingNanos, foldIndex);
+            })));
+        }
+        tasks.forEach(pool::execute);
+
+        if (!budget.isUnlimited() || earlyStopping.isEnabled()) {
+            awaitFolds(tasks, folds, started, recorder, budget, earlyStopping);
+        }
+
+        final List<Predictions> predictions = new ArrayList<>(numFolds);
+        long completedTrainingNanos = 0;
+        for (int fold = 0; fold < numFolds; fold++) {
+            if (tasks.get(fold).isCancelled()) {
+                continue;
+            }
+            predictions.add(Predictions.ofFold(tasks.get(fold).join(), folds.getTest(fold),
+                    ClassificationCallable.CLASS_INDEX));
+            completedTrainingNanos += trainingNanos[fold];
+        }
+        return new Outcome(predictions.size(), completedTrainingNanos, Predictions.concat(predictions));
+    }
+
+    /**
+     * Waits for the submitted fold tasks until the budget is exceeded or early stopping says so,
+     * then cancels every task that hasn't completed.
+     *
+     * @param started time the first fold started at, or {@link #NOT_STARTED}
+     */
+    private static void awaitFolds(
+            final List<ForkJoinTask<double[][]>> tasks,
+            final FoldPartition folds,
+            final AtomicLong started,
+            final PhaseRecorder recorder,
+            final Budget budget,
+            final EarlyStopping earlyStopping) throws Exception {
+        try {
+            int checkedFolds = 0;
+            for (final ForkJoinTask<double[][]> task : tasks) {
+                while (!task.isDone()) {
+                    final long start = started.get();
+                    if (budget.isExceeded(start == NOT_STARTED ? 0 : System.nanoTime() - start,
+                            recorder.getAllocatedBytes())) {
+                        return;
+                    }
+                    final int completedFolds = (int) tasks.stream().filter(ForkJoinTask::isCompletedNormally).count();
+                    if (completedFolds > checkedFolds && completedFolds >= earlyStopping.getMinFolds()) {
+                        checkedFolds = completedFolds;
+                        if (earlyStopping.shouldStop(areaUnderCompletedCurve(tasks, folds))) {
+                            return;
+                        }
+                    }
+                    try {
+                        task.get(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (final TimeoutException | ExecutionException e) {
+                        // failures are rethrown when the fold is joined
+                    }
+                }
+            }
+        } finally {
+            tasks.forEach(task -> task.cancel(false));
+        }
+    }
+
+    /**
+     * AUC of the predictions of the folds completed so far.
+     */
+    private static double areaUnderCompletedCurve(
+            final List<ForkJoinTask<double[][]>> tasks,
+            final FoldPartition folds) {
+        final List<Predictions> predictions = new ArrayList<>(tasks.size());
+        for (int fold = 0; fold < tasks.size(); fold++) {
+            if (tasks.get(fold).isCompletedNormally()) {
+                predictions.add(Predictions.ofFold(tasks.get(fold).join(), folds.getTest(fold),
+                        ClassificationCallable.CLASS_INDEX));
+            }
+        }
+        return RocCurve.compute(Predictions.concat(predictions)).getAreaUnderCurve();
+    }
+
+    private static double[][] predictFold(
+            final Classifier classifier,
+            final Instances train,
+            final Instances test,
+            final long[] trainingNanos,
+            final int fold) throws Exception {
+        final Classifier copy = Classifier.makeCopy(classifier);
+        final long before = System.nanoTime();
+        copy.buildClassifier(train);
+        trainingNanos[fold] = System.nanoTime() - before;
+
+        final double[][] distributions = new double[test.numInstances()][];
+        for (int i = 0; i < test.numInstances(); i++) {
+            final Instance classMissing = (Instance) test.instance(i).copy();
+            classMissing.setDataset(test);
+            classMissing.setClassMissing();
+            distributions[i] = test.classAttribute().isNominal()
+                    ? copy.distributionForInstance(classMissing)
+                    : new double[]{copy.classifyInstance(classMissing)};
+        }
+        return distributions;
+    }
+
+    @Value
+    static class Outcome {
+        int completedFolds;
+        long trainingNanos;
+        Predictions predictions;
+    }
+}
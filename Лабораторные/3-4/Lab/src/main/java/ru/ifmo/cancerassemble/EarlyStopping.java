@@ -0,0 +1,60 @@
+package ru.ifmo.cancerassemble;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Stops the cross-validation of a configuration whose AUC on the folds completed so far is
+ * clearly below the best AUC of a complete configuration of the same classifier, as it isn't
+ * going to be reported anyway. The number of folds to complete before the first check and the
+ * margin are read from the {@code sweep.early.folds} and {@code sweep.early.margin} system
+ * properties; a margin of 1 disables early stopping.
+ */
+final class EarlyStopping {
+    static final EarlyStopping NEVER = new EarlyStopping(Integer.MAX_VALUE, 1, () -> Double.NaN);
+
+    private static final String FOLDS_PROPERTY = "sweep.early.folds";
+    private static final String MARGIN_PROPERTY = "sweep.early.margin";
+    private static final int DEFAULT_FOLDS = 3;
+    private static final double DEFAULT_MARGIN = 0.1;
+
+    private final int minFolds;
+    private final double margin;
+    private final DoubleSupplier bestAreaUnderCurve;
+
+    private EarlyStopping(final int minFolds, final double margin, final DoubleSupplier bestAreaUnderCurve) {
+        this.minFolds = minFolds;
+        this.margin = margin;
+        this.bestAreaUnderCurve = bestAreaUnderCurve;
+    }
+
+    /**
+     * Early stopping against the AUC returned by the supplier, which is {@code NaN} while there
+     * is nothing to compare with. The supplier is called from the thread of the run.
+     */
+    static EarlyStopping fromSystemProperties(final DoubleSupplier bestAreaUnderCurve) {
+        final double margin = Double.parseDouble(System.getProperty(MARGIN_PROPERTY, Double.toString(DEFAULT_MARGIN)));
+        return margin >= 1
+                ? NEVER
+                : new EarlyStopping(Math.max(1, Integer.getInteger(FOLDS_PROPERTY, DEFAULT_FOLDS)), margin,
+                bestAreaUnderCurve);
+    }
+
+    boolean isEnabled() {
+        return this != NEVER;
+    }
+
+    int getMinFolds() {
+        return minFolds;
+    }
+
+    /**
+     * AUC the runs are compared with, or {@code NaN} while there is nothing to compare with.
+     */
+    double getBestAreaUnderCurve() {
+        return bestAreaUnderCurve.getAsDouble();
+    }
+
+    boolean shouldStop(final double areaUnderCurve) {
+        return areaUnderCurve < getBestAreaUnderCurve() - margin;
+    }
+}
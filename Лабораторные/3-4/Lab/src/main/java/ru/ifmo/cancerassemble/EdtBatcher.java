@@ -0,0 +1,44 @@
+package ru.ifmo.cancerassemble;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Hands items produced on worker threads over to the event dispatch thread in batches. At most
+ * one drain is scheduled at a time, and it passes everything published since the previous
+ * drain to the consumer at once.
+ */
+final class EdtBatcher<T> {
+    private final Queue<T> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Consumer<List<T>> consumer;
+
+    EdtBatcher(final Consumer<List<T>> consumer) {
+        this.consumer = consumer;
+    }
+
+    void publish(final T item) {
+        pending.add(item);
+        if (scheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::drain);
+        }
+    }
+
+    private void drain() {
+        scheduled.set(false);
+
+        final List<T> batch = new ArrayList<>();
+        for (T item = pending.poll(); item != null; item = pending.poll()) {
+            batch.add(item);
+        }
+
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+}
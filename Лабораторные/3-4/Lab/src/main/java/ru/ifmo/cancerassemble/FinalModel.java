@@ -0,0 +1,25 @@
+package ru.ifmo.cancerassemble;
+
+import java.util.Locale;
+
+/**
+ * What to do with the model trained on the whole data set, which cross-validation itself never
+ * uses. Chosen with the {@code final.model} system property.
+ */
+enum FinalModel {
+    /**
+     * Don't train it at all: only the fold models are trained.
+     */
+    SKIP,
+    /**
+     * Train it on a copy of the classifier as a separate task running concurrently with the folds,
+     * and keep it in the result for scoring or export.
+     */
+    CONCURRENT;
+
+    private static final String FINAL_MODEL_PROPERTY = "final.model";
+
+    static FinalModel fromSystemProperties() {
+        return valueOf(System.getProperty(FINAL_MODEL_PROPERTY, SKIP.name()).toUpperCase(Locale.ENGLISH));
+    }
+}
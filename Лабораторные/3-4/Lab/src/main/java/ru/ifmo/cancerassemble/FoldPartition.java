@@ -0,0 +1,55 @@
+package ru.ifmo.cancerassemble;
+
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Train and test folds of a data set, built once and shared read-only by all classifiers. The
+ * folds are built exactly like {@link weka.classifiers.Evaluation#crossValidateModel} builds
+ * them with the same random generator.
+ */
+final class FoldPartition {
+    private final List<Instances> trainFolds;
+    private final List<Instances> testFolds;
+
+    private FoldPartition(final List<Instances> trainFolds, final List<Instances> testFolds) {
+        this.trainFolds = Collections.unmodifiableList(trainFolds);
+        this.testFolds = Collections.unmodifiableList(testFolds);
+    }
+
+    static FoldPartition create(
+            final Instances data,
+            final int numFolds,
+            final Random random) {
+        final Instances randomized = new Instances(data);
+        randomized.randomize(random);
+        if (randomized.classAttribute().isNominal()) {
+            randomized.stratify(numFolds);
+        }
+
+        final List<Instances> trainFolds = new ArrayList<>(numFolds);
+        final List<Instances> testFolds = new ArrayList<>(numFolds);
+        for (int fold = 0; fold < numFolds; fold++) {
+            trainFolds.add(new ReadOnlyInstances(randomized.trainCV(numFolds, fold, random)));
+            testFolds.add(new ReadOnlyInstances(randomized.testCV(numFolds, fold)));
+        }
+
+        return new FoldPartition(trainFolds, testFolds);
+    }
+
+    int getNumFolds() {
+        return trainFolds.size();
+    }
+
+    Instances getTrain(final int fold) {
+        return trainFolds.get(fold);
+    }
+
+    Instances getTest(final int fold) {
+        return testFolds.get(fold);
+    }
+}
@@ -0,0 +1,228 @@
+package ru.ifmo.cancerassemble;
+
+import lombok.Value;
+import weka.classifiers.Classifier;
+import weka.core.Instances;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link ClassificationCallable} that may be stopped before all its folds complete in a
+ * child JVM. Weka classifiers ignore interrupts, so a fold still training when the budget runs
+ * out or the run is stopped early would otherwise keep its thread, its processor time and its
+ * memory until it finishes on its own. The child exits as soon as it has written the result,
+ * which kills such folds and frees everything they allocated.
+ *
+ * <p>The child loads the data set from the same file through the {@link ColumnarCache}, builds
+ * the same folds from the seed and gets the system properties of this JVM. The best AUC the run
+ * is compared with by early stopping is sent to it whenever it changes. Should the child outlive
+ * its time budget by more than {@link #GRACE_SECONDS}, it is killed, and the run is reported
+ * without any completed folds.
+ */
+class IsolatedClassification implements Callable<ClassificationResult> {
+    private static final long POLL_INTERVAL_MILLIS = 50;
+    private static final long GRACE_SECONDS = 30;
+    private static final String RESULT_FILE_PREFIX = "classification";
+    private static final String RESULT_FILE_SUFFIX = ".result";
+    private static final String HEADLESS_OPTION = "-Djava.awt.headless=true";
+    private static final List<String> DEBUG_OPTION_PREFIXES = Arrays.asList(
+            "-agentlib", "-agentpath", "-javaagent", "-Xrunjdwp", "-Xdebug");
+
+    private final Classifier classifier;
+    private final Request request;
+    private final EarlyStopping earlyStopping;
+    private final long submitTime;
+
+    /**
+     * Should be created right before the task is submitted, just like a
+     * {@link ClassificationCallable}: the time until the child starts its run is reported as the
+     * queue time of the classifier.
+     */
+    IsolatedClassification(
+            final Classifier classifier,
+            final String inputFilePath,
+            final int numFolds,
+            final long seed,
+            final FinalModel finalModelMode,
+            final Budget budget,
+            final EarlyStopping earlyStopping,
+            final int parallelism) {
+        this.classifier = classifier;
+        this.request = new Request(classifier, inputFilePath, numFolds, seed, finalModelMode, budget,
+                earlyStopping.isEnabled(), parallelism);
+        this.earlyStopping = earlyStopping;
+        this.submitTime = System.nanoTime();
+    }
+
+    @Override
+    public ClassificationResult call() throws Exception {
+        final long start = System.nanoTime();
+        final Path resultFile = Files.createTempFile(RESULT_FILE_PREFIX, RESULT_FILE_SUFFIX);
+        final Process process = new ProcessBuilder(childCommand(resultFile))
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try {
+            final ObjectOutputStream requests = new ObjectOutputStream(
+                    new BufferedOutputStream(process.getOutputStream()));
+            requests.writeObject(request);
+            requests.flush();
+
+            final long timeLimit = request.getBudget().getTimeNanos() == Long.MAX_VALUE
+                    ? Long.MAX_VALUE
+                    : request.getBudget().getTimeNanos() + TimeUnit.SECONDS.toNanos(GRACE_SECONDS);
+            double sentAreaUnderCurve = Double.NaN;
+            while (!process.waitFor(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (System.nanoTime() - start > timeLimit) {
+                    process.destroyForcibly().waitFor();
+                    return ClassificationResult.killed(classifier, request.getNumFolds(),
+                            TimeUnit.NANOSECONDS.toMillis(start - submitTime),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+                final double best = earlyStopping.getBestAreaUnderCurve();
+                if (request.isEarlyStopping() && Double.compare(best, sentAreaUnderCurve) != 0) {
+                    sentAreaUnderCurve = best;
+                    try {
+                        requests.writeDouble(best);
+                        requests.flush();
+                    } catch (final IOException e) {
+                        // the child has just exited
+                    }
+                }
+            }
+            if (process.exitValue() != 0) {
+                throw new IllegalStateException(String.format("Classification of %s exited with code %d",
+                        classifier.getClass().getSimpleName(), process.exitValue()));
+            }
+
+            try (final ObjectInputStream input = new ObjectInputStream(
+                    new BufferedInputStream(Files.newInputStream(resultFile)))) {
+                final ClassificationResult result = (ClassificationResult) input.readObject();
+                final long startupMillis = input.readLong();
+                return result.fromIsolatedRun(classifier,
+                        TimeUnit.NANOSECONDS.toMillis(start - submitTime) + startupMillis);
+            }
+        } finally {
+            process.destroyForcibly();
+            Files.deleteIfExists(resultFile);
+        }
+    }
+
+    /**
+     * Command starting a JVM like this one, without the debugging and profiling agents, on the
+     * main method of this class.
+     */
+    private static List<String> childCommand(final Path resultFile) {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (final String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (DEBUG_OPTION_PREFIXES.stream().noneMatch(argument::startsWith)) {
+                command.add(argument);
+            }
+        }
+        command.add(HEADLESS_OPTION);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(IsolatedClassification.class.getName());
+        command.add(resultFile.toString());
+        return command;
+    }
+
+    /**
+     * Child side: reads the request from the standard input, runs it and writes the result and
+     * the milliseconds the child took to start the run to the file given as the only argument.
+     */
+    public static void main(final String[] args) {
+        try {
+            final ObjectInputStream requests = new ObjectInputStream(new BufferedInputStream(System.in));
+            final Request request = (Request) requests.readObject();
+
+            final Instances data = ColumnarCache.load(Paths.get(request.getInputFilePath())).toInstances();
+            final FoldPartition folds = FoldPartition.create(data, request.getNumFolds(),
+                    new Random(request.getSeed()));
+            final EarlyStopping earlyStopping;
+            if (request.isEarlyStopping()) {
+                final BestAreaUnderCurve best = new BestAreaUnderCurve(requests);
+                best.start();
+                earlyStopping = EarlyStopping.fromSystemProperties(best::get);
+            } else {
+                earlyStopping = EarlyStopping.NEVER;
+            }
+
+            final long startupMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            final ClassificationResult result = new ClassificationCallable(request.getClassifier(), data, folds,
+                    request.getFinalModelMode(), request.getBudget(), earlyStopping, request.getParallelism())
+                    .call();
+
+            try (final ObjectOutputStream output = new ObjectOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(Paths.get(args[0]))))) {
+                output.writeObject(result);
+                output.writeLong(startupMillis);
+            }
+        } catch (final Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        // also kills the folds that are still training
+        System.exit(0);
+    }
+
+    @Value
+    private static class Request implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        Classifier classifier;
+        String inputFilePath;
+        int numFolds;
+        long seed;
+        FinalModel finalModelMode;
+        Budget budget;
+        boolean earlyStopping;
+        int parallelism;
+    }
+
+    /**
+     * Latest best AUC sent by the parent, read on a daemon thread until the parent closes the
+     * stream.
+     */
+    private static final class BestAreaUnderCurve extends Thread {
+        private final ObjectInputStream input;
+        private volatile double value = Double.NaN;
+
+        private BestAreaUnderCurve(final ObjectInputStream input) {
+            super("best-auc-reader");
+            this.input = input;
+            setDaemon(true);
+        }
+
+        double get() {
+            return value;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    value = input.readDouble();
+                }
+            } catch (final IOException e) {
+                // the parent is gone, keep the last value
+            }
+        }
+    }
+}
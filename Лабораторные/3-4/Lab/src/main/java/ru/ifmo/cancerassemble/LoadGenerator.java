@@ -0,0 +1,166 @@
+package ru.ifmo.cancerassemble;
+
+import com.sun.net.httpserver.HttpServer;
+import weka.core.Instances;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load generator for the {@link ScoringServer}: a number of clients send
+ * {@code POST /score} requests back to back, each with the next rows of the data set, and the
+ * request latencies and throughput are reported together with the server statistics. When
+ * {@code scoring.url} isn't set, the server is started in the same JVM on a free port with the
+ * {@link ScoringServer} properties, so the whole path can be benchmarked offline.
+ *
+ * <p>Configured with system properties: {@code scoring.url} (e.g. {@code http://localhost:8080}),
+ * {@code scoring.data}, {@code scoring.clients} (twice the cores by default),
+ * {@code scoring.requests}, {@code scoring.warmup} (requests sent before measuring) and
+ * {@code scoring.rows} (instances per request).
+ */
+public class LoadGenerator {
+    private static final String URL_PROPERTY = "scoring.url";
+    private static final String DATA_FILE_PROPERTY = "scoring.data";
+    private static final String DATA_FILE_PATH = "data.arff";
+    private static final String CLIENTS_PROPERTY = "scoring.clients";
+    private static final String REQUESTS_PROPERTY = "scoring.requests";
+    private static final int DEFAULT_REQUESTS = 10000;
+    private static final String WARMUP_PROPERTY = "scoring.warmup";
+    private static final int DEFAULT_WARMUP = 1000;
+    private static final String ROWS_PROPERTY = "scoring.rows";
+    private static final int DEFAULT_ROWS = 1;
+    private static final int BUFFER_SIZE = 8192;
+
+    public static void main(final String[] args) throws Exception {
+        final Instances data = ColumnarCache.load(Paths.get(System.getProperty(DATA_FILE_PROPERTY, DATA_FILE_PATH)))
+                .toInstances();
+        final int clients = Math.max(1, Integer.getInteger(CLIENTS_PROPERTY,
+                2 * Runtime.getRuntime().availableProcessors()));
+        final int requests = Integer.getInteger(REQUESTS_PROPERTY, DEFAULT_REQUESTS);
+        final int warmup = Integer.getInteger(WARMUP_PROPERTY, DEFAULT_WARMUP);
+        final int rows = Math.max(1, Integer.getInteger(ROWS_PROPERTY, DEFAULT_ROWS));
+
+        final HttpServer server = System.getProperty(URL_PROPERTY) == null ? ScoringServer.start(0) : null;
+        final String url = server == null
+                ? System.getProperty(URL_PROPERTY)
+                : "http://localhost:" + server.getAddress().getPort();
+
+        final byte[][] payloads = preparePayloads(data, rows);
+        run(url + ScoringServer.SCORE_PATH, payloads, clients, warmup, new LatencyHistogram());
+
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final long before = System.nanoTime();
+        final long errors = run(url + ScoringServer.SCORE_PATH, payloads, clients, requests, latencies);
+        final double seconds = (System.nanoTime() - before) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        System.out.println(String.format(Locale.ENGLISH,
+                "%d requests of %d rows from %d clients in %.2f s: %.1f requests/s, %.1f rows/s, %d errors",
+                requests, rows, clients, seconds, requests / seconds, requests * rows / seconds, errors));
+        System.out.println(String.format(Locale.ENGLISH,
+                "Request latency, ms: p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f",
+                latencies.getPercentileMillis(50), latencies.getPercentileMillis(90),
+                latencies.getPercentileMillis(99), latencies.getPercentileMillis(99.9),
+                latencies.getPercentileMillis(100)));
+        System.out.print("Server: " + new String(send(url + ScoringServer.STATS_PATH, null), StandardCharsets.UTF_8));
+
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Request bodies of the given number of consecutive rows each, cycling through the data set.
+     */
+    private static byte[][] preparePayloads(final Instances data, final int rows) {
+        final byte[][] payloads = new byte[data.numInstances()][];
+        for (int first = 0; first < payloads.length; first++) {
+            final StringBuilder body = new StringBuilder();
+            for (int row = 0; row < rows; row++) {
+                body.append(ScoringServer.formatInstance(data.instance((first + row) % data.numInstances())))
+                        .append('\n');
+            }
+            payloads[first] = body.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return payloads;
+    }
+
+    /**
+     * Sends the given number of requests from the clients and records their latencies.
+     *
+     * @return number of failed requests
+     */
+    private static long run(
+            final String url,
+            final byte[][] payloads,
+            final int clients,
+            final int requests,
+            final LatencyHistogram latencies) throws Exception {
+        final AtomicInteger next = new AtomicInteger();
+        final LongAdder errors = new LongAdder();
+        final ExecutorService executor = Executors.newFixedThreadPool(clients);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>(clients);
+            for (int client = 0; client < clients; client++) {
+                futures.add(executor.submit(() -> {
+                    for (int request = next.getAndIncrement(); request < requests; request = next.getAndIncrement()) {
+                        final long before = System.nanoTime();
+                        try {
+                            send(url, payloads[request % payloads.length]);
+                        } catch (final IOException e) {
+                            errors.increment();
+                        }
+                        latencies.record(System.nanoTime() - before);
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return errors.sum();
+    }
+
+    /**
+     * Sends a request, {@code POST} with the body when it is given and {@code GET} otherwise,
+     * and returns the response body.
+     */
+    private static byte[] send(final String url, final byte[] body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (body != null) {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (final OutputStream output = connection.getOutputStream()) {
+                output.write(body);
+            }
+        }
+
+        try (final InputStream input = connection.getInputStream()) {
+            final ByteArrayOutputStream response = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                response.write(buffer, 0, read);
+            }
+            return response.toByteArray();
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package ru.ifmo.cancerassemble;
 
-import com.google.common.base.Charsets;
-import com.google.common.primitives.Doubles;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
@@ -27,6 +25,7 @@ import weka.classifiers.trees.DecisionStump;
 import weka.classifiers.trees.REPTree;
 import weka.classifiers.trees.RandomForest;
 import weka.core.Instances;
+import weka.core.SerializationHelper;
 
 import javax.swing.*;
 import javax.swing.table.*;
@@ -35,20 +34,50 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.io.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class Main {
     private static final String INPUT_FILE_PATH = "data.arff";
+    private static final String INPUT_FILE_PROPERTY = "input.file";
+    private static final String HEADLESS_PROPERTY = "headless";
+    private static final String OUTPUT_FILE_PROPERTY = "output.file";
+    private static final String OUTPUT_FORMAT_PROPERTY = "output.format";
+    private static final String RESULTS_FILE_SUFFIX = ".results.";
+    private static final String MODEL_DIRECTORY_PROPERTY = "model.dir";
+    private static final String MODEL_FILE_SUFFIX = ".model";
+    private static final String RESULT_CACHE_PROPERTY = "result.cache";
+    private static final String RESULT_CACHE_SUFFIX = ".cache";
+    private static final String WORKERS_PROPERTY = "workers";
+    private static final String SEED_PROPERTY = "seed";
+    private static final long DEFAULT_SEED = 1;
+    private static final int NUM_FOLDS = 10;
 
     private static final String MAIN_FRAME_TITLE = "ROC Curves";
     private static final String INITIAL_PROGRESS_LABEL = "In a queue";
+    private static final String TIMED_OUT_LABEL = "Timed out (%d/%d folds)";
+    private static final String CACHED_LABEL = "%d (cached)";
     private static final String PROGRESS_FRAME_TITLE = "Progress Frame";
+    private static final String CLASSIFICATION_THREAD_NAME = "classification";
     private static final String VERTICAL_AXIS_LABEL = "True Positive Rate";
     private static final String HORIZONTAL_AXIS_LABEL = "False Positive Rate";
 
@@ -71,15 +100,26 @@ public class Main {
 
     private static final int DEFAULT_WINDOW_WIDTH = 1280;
     private static final int DEFAULT_WINDOW_HEIGHT = 1024;
-    private static final Dimension SCREEN_SIZE = Toolkit.getDefaultToolkit().getScreenSize();
+    private static final double ROC_TOLERANCE = 0.5 / DEFAULT_WINDOW_WIDTH;
 
     private static final float GRID_STEP = 0.025f;
     private static final int TABLE_COLUMN_MARGIN = 10;
     private static final Paint GRID_COLOR = Color.DARK_GRAY;
     private static final Paint BACKGROUND_COLOR = new Color(235, 235, 235);
 
-    private static final String[] TABLE_HEADER_LABELS = {
-            "Classifier", "AUC", "Sensitivity", "Specification", "MCC", "Compute time"};
+    private static final String NO_INTERVAL_LABEL = "-";
+
+    private static final String[] RESULT_HEADER_LABELS = {
+            "Classifier", "AUC", "Sensitivity", "Specification", "MCC",
+            "AUC CI", "Sensitivity CI", "Specification CI", "MCC CI", "Compute time", "Queue time", "Saved time"};
+    private static final String PHASE_HEADER_FORMAT = "%s time";
+    private static final String[] TOTAL_HEADER_LABELS = {"CPU load", "Allocated MB"};
+    private static final String[] TABLE_HEADER_LABELS = Stream.of(
+            Arrays.stream(RESULT_HEADER_LABELS),
+            Arrays.stream(Phase.values()).map(phase -> String.format(PHASE_HEADER_FORMAT, phase.getLabel())),
+            Arrays.stream(TOTAL_HEADER_LABELS))
+            .flatMap(Function.identity())
+            .toArray(String[]::new);
 
     private static DefaultTableModel getReadOnlyTableModel(
             final String[] headerLabels,
@@ -93,16 +133,76 @@ public class Main {
     }
 
     public static void main(final String[] args) {
+        final String inputFilePath = System.getProperty(INPUT_FILE_PROPERTY, INPUT_FILE_PATH);
         final List<Classifier> classifiers = initializeClassifiers();
-        final Instances data = readData(INPUT_FILE_PATH);
-        final JTable table = prepareProgressTable(classifiers);
-        final Map<Integer, Boolean> visibilityStatuses = new ConcurrentHashMap<>(classifiers.size());
-        final Map<Integer, Integer> donePositions = new ConcurrentHashMap<>(classifiers.size());
-        final ChartComponents chartComponents = configureAndShowMainWindow();
+        final Instances data = readData(inputFilePath);
+        final String cacheDirectory = System.getProperty(RESULT_CACHE_PROPERTY, inputFilePath + RESULT_CACHE_SUFFIX);
+
+        if (Boolean.getBoolean(HEADLESS_PROPERTY) || GraphicsEnvironment.isHeadless()) {
+            runHeadless(inputFilePath, cacheDirectory, data, classifiers);
+            return;
+        }
+
+        final Map<Class<?>, Integer> classifierRows = indexClassifiers(classifiers);
+
+        SwingUtilities.invokeLater(() -> {
+            final JTable table = prepareProgressTable(classifiers);
+            final Map<Integer, Boolean> visibilityStatuses = new HashMap<>(classifiers.size());
+            final Map<Integer, Integer> plotNumbers = new HashMap<>(classifiers.size());
+            final ChartComponents chartComponents = configureAndShowMainWindow();
+
+            configureAndShowProgressFrame(classifiers, table, visibilityStatuses,
+                    plotNumbers, chartComponents.getChart());
+
+            final EdtBatcher<PlottedResult> batcher = new EdtBatcher<>(results ->
+                    processResults(results, chartComponents.getDataset(), chartComponents.getChart(),
+                            table, classifierRows, plotNumbers));
+            new Thread(() -> performClassification(inputFilePath, data, classifiers, cacheDirectory, result ->
+                    batcher.publish(new PlottedResult(result, RocDownsampler.downsample(result, ROC_TOLERANCE)))),
+                    CLASSIFICATION_THREAD_NAME).start();
+        });
+    }
+
+    /**
+     * Table rows of the classifiers, looked up by class: a row shows the best configuration of
+     * its classifier family, see {@link ParameterSweep}.
+     */
+    private static Map<Class<?>, Integer> indexClassifiers(final List<Classifier> classifiers) {
+        final Map<Class<?>, Integer> rows = new HashMap<>(classifiers.size());
+        for (int row = 0; row < classifiers.size(); row++) {
+            rows.put(classifiers.get(row).getClass(), row);
+        }
+        return rows;
+    }
+
+    /**
+     * Runs the classifiers without creating any AWT or Swing objects and writes every result to
+     * the output file as soon as it completes.
+     */
+    private static void runHeadless(
+            final String inputFilePath,
+            final String cacheDirectory,
+            final Instances data,
+            final List<Classifier> classifiers) {
+        final ResultWriter.Format format = ResultWriter.Format.valueOf(
+                System.getProperty(OUTPUT_FORMAT_PROPERTY, ResultWriter.Format.CSV.name()).toUpperCase(Locale.ENGLISH));
+        final String outputFilePath = System.getProperty(OUTPUT_FILE_PROPERTY,
+                inputFilePath + RESULTS_FILE_SUFFIX + format.getExtension());
+
+        try (final ResultWriter writer = new ResultWriter(
+                Files.newBufferedWriter(Paths.get(outputFilePath), StandardCharsets.UTF_8), format)) {
+            performClassification(inputFilePath, data, classifiers, cacheDirectory, result -> {
+                try {
+                    writer.write(result);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final IOException | UncheckedIOException e) {
+            throw new IllegalArgumentException("Error writing results to " + outputFilePath, e);
+        }
 
-        configureAndShowProgressFrame(classifiers, table, visibilityStatuses,
-                donePositions, chartComponents.getChart());
-        performClassification(data, classifiers, chartComponents, table, donePositions);
+        System.out.println("Results written to " + outputFilePath);
     }
 
     private static JTable prepareProgressTable(final Collection<Classifier> classifiers) {
@@ -111,8 +211,8 @@ public class Main {
         return table;
     }
 
-    private static List<Classifier> initializeClassifiers() {
-        final List<Classifier> classifiers = new CopyOnWriteArrayList<>();
+    static List<Classifier> initializeClassifiers() {
+        final List<Classifier> classifiers = new ArrayList<>();
 
         classifiers.add(new AdaBoostM1());
         classifiers.add(new BayesianLogisticRegression());
@@ -134,14 +234,16 @@ public class Main {
     }
 
     private static Instances readData(final String filePath) {
-        try (final BufferedReader reader = new BufferedReader(
-                new InputStreamReader(new FileInputStream(filePath), Charsets.UTF_8))) {
-            final Instances data = new Instances(reader);
-            data.setClass(data.attribute(data.numAttributes() - 1));
-            return data;
-        } catch (final FileNotFoundException e) {
+        try {
+            final ColumnarData data = ColumnarCache.load(Paths.get(filePath));
+            System.out.println(String.format(Locale.ENGLISH,
+                    "Loaded %d instances with %d attributes from %s in %d ms (%.1f MB/s)",
+                    data.getNumRows(), data.numColumns(), filePath,
+                    TimeUnit.NANOSECONDS.toMillis(data.getLoadTimeNanos()), data.getThroughput()));
+            return data.toInstances();
+        } catch (final NoSuchFileException e) {
             throw new IllegalArgumentException("Can't find file " + filePath, e);
-        } catch (final IOException e) {
+        } catch (final IOException | IllegalArgumentException e) {
             throw new IllegalArgumentException("Error parsing file " + filePath, e);
         }
     }
@@ -165,7 +267,7 @@ public class Main {
             final List<Classifier> classifiers,
             final JTable progressTable,
             final Map<Integer, Boolean> visibleCurves,
-            final Map<Integer, Integer> donePositions,
+            final Map<Integer, Integer> plotNumbers,
             final JFreeChart chart) {
         fillTableWithClassifiers(classifiers, progressTable,
                 TABLE_HEADER_LABELS.length, visibleCurves);
@@ -181,9 +283,9 @@ public class Main {
                 final Point p = e.getPoint();
                 final int row = jTable.rowAtPoint(p);
 
-                if (e.getClickCount() >= 2 && donePositions.containsKey(row)) {
+                if (e.getClickCount() >= 2 && plotNumbers.containsKey(row)) {
                     final XYItemRenderer renderer = ((XYPlot) chart.getPlot()).getRenderer();
-                    final int plotNumber = donePositions.get(row);
+                    final int plotNumber = plotNumbers.get(row);
                     final boolean status = !visibleCurves.get(plotNumber);
                     visibleCurves.put(plotNumber, status);
                     renderer.setSeriesVisible(plotNumber, status);
@@ -207,7 +309,7 @@ public class Main {
         jf.getContentPane().add(scrollPane, BorderLayout.CENTER);
         jf.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         scrollPane.setPreferredSize(new Dimension(size.width - 10, size.height + 10));
-        jf.setLocation(getCentralizedLocation(SCREEN_SIZE, jf.getSize()));
+        jf.setLocation(getCentralizedLocation(Toolkit.getDefaultToolkit().getScreenSize(), jf.getSize()));
 
         jf.addWindowListener(new WindowAdapter() {
             @Override
@@ -223,23 +325,147 @@ public class Main {
         return jf;
     }
 
+    /**
+     * Passes the result of the best configuration of every classifier to the consumer as soon as
+     * all its configurations are either found in the cache or cross-validated. Configurations are
+     * submitted longest expected first, each stopped early when it is clearly worse than the best
+     * configuration of its family completed by then. An empty cache directory disables the cache.
+     */
     private static void performClassification(
+            final String inputFilePath,
             final Instances data,
             final List<Classifier> classifiers,
-            final ChartComponents chartComponents,
-            final JTable table,
-            final Map<Integer, Integer> donePositions) {
-        final ExecutorService executor = Executors.newWorkStealingPool();
+            final String cacheDirectory,
+            final Consumer<ClassificationResult> resultConsumer) {
+        final int workers = Math.max(1, Integer.getInteger(WORKERS_PROPERTY,
+                Runtime.getRuntime().availableProcessors()));
+        final FinalModel finalModel = FinalModel.fromSystemProperties();
+        final String modelDirectory = System.getProperty(MODEL_DIRECTORY_PROPERTY);
+        final long seed = Long.getLong(SEED_PROPERTY, DEFAULT_SEED);
+        final Bootstrap bootstrap = Bootstrap.fromSystemProperties(seed);
+        final ResultCache cache = cacheDirectory.isEmpty()
+                ? null
+                : new ResultCache(Paths.get(cacheDirectory), data, NUM_FOLDS, seed);
+
+        final List<ParameterSweep.Configuration> configurations = ParameterSweep.fromSystemProperties()
+                .expand(classifiers, seed);
+        final Map<Class<?>, ParameterSweep.Family> families = new HashMap<>(classifiers.size());
+        configurations.forEach(configuration -> families.computeIfAbsent(configuration.getClassifier().getClass(),
+                family -> new ParameterSweep.Family()).addConfiguration());
+
+        final List<Classifier> pending = new ArrayList<>(configurations.size());
+        for (final ParameterSweep.Configuration configuration : configurations) {
+            final Classifier classifier = configuration.getClassifier();
+            final ClassificationResult cached = cache == null ? null : cache.load(classifier, finalModel);
+            if (cached == null) {
+                pending.add(classifier);
+            } else {
+                collectResult(cached, families, bootstrap, modelDirectory, resultConsumer);
+            }
+        }
+        if (cache != null) {
+            System.out.println(String.format(Locale.ENGLISH, "Loaded %d cached results from %s",
+                    configurations.size() - pending.size(), cacheDirectory));
+        }
+        if (pending.isEmpty()) {
+            System.out.println("Classifying complete");
+            return;
+        }
 
-        classifiers.parallelStream()
-                .map(classifier -> executor.submit(new ClassificationCallable(classifier, data)))
-                .forEach(future -> processResult(future, chartComponents.getDataset(), chartComponents.getChart(),
-                        table, classifiers, donePositions));
+        final long before = System.nanoTime();
+        final FoldPartition folds = FoldPartition.create(data, NUM_FOLDS, new Random(seed));
+        System.out.println(String.format(Locale.ENGLISH, "Built %d folds in %d ms",
+                folds.getNumFolds(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before)));
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        // every run gets its share of the processors for its folds
+        final int parallelism = (Runtime.getRuntime().availableProcessors() + workers - 1) / workers;
+        final CompletionService<ClassificationResult> completionService = new ExecutorCompletionService<>(executor);
+
+        pending.forEach(classifier -> {
+            final ParameterSweep.Family family = families.get(classifier.getClass());
+            final Budget budget = Budget.forClassifier(classifier.getClass().getSimpleName());
+            final EarlyStopping earlyStopping = family.getConfigurations() == 1
+                    ? EarlyStopping.NEVER
+                    : EarlyStopping.fromSystemProperties(family::getBestAreaUnderCurve);
+            // a run that may leave folds training is made in a JVM that can be stopped
+            completionService.submit(budget.isUnlimited() && !earlyStopping.isEnabled()
+                    ? new ClassificationCallable(classifier, data, folds, finalModel, budget, earlyStopping,
+                    parallelism)
+                    : new IsolatedClassification(classifier, inputFilePath, NUM_FOLDS, seed, finalModel, budget,
+                    earlyStopping, parallelism));
+        });
+
+        try {
+            for (int done = 0; done < pending.size(); done++) {
+                final ClassificationResult result = completionService.take().get();
+                if (cache != null) {
+                    cache.store(result);
+                }
+                collectResult(result, families, bootstrap, modelDirectory, resultConsumer);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (final ExecutionException e) {
+            throw new IllegalArgumentException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
 
-        executor.shutdown();
         System.out.println("Classifying complete");
     }
 
+    /**
+     * Adds the result of a configuration to its family and publishes the best result of the
+     * family once all its configurations are done.
+     */
+    private static void collectResult(
+            final ClassificationResult result,
+            final Map<Class<?>, ParameterSweep.Family> families,
+            final Bootstrap bootstrap,
+            final String modelDirectory,
+            final Consumer<ClassificationResult> resultConsumer) {
+        final ParameterSweep.Family family = families.get(result.getClassifier().getClass());
+        if (family.getConfigurations() > 1) {
+            System.out.println(String.format(Locale.ENGLISH, "%s: AUC %.3f on %d/%d folds%s",
+                    ParameterSweep.describe(result.getClassifier()), result.getAreaUnderCurve(),
+                    result.getCompletedFolds(), result.getNumFolds(), result.isCached() ? " (cached)" : ""));
+        }
+        if (family.complete(result)) {
+            publishResult(family.getBest(), bootstrap, modelDirectory, resultConsumer);
+        }
+    }
+
+    /**
+     * Estimates the confidence intervals of the result and passes it on.
+     */
+    private static void publishResult(
+            final ClassificationResult computed,
+            final Bootstrap bootstrap,
+            final String modelDirectory,
+            final Consumer<ClassificationResult> resultConsumer) {
+        final PhaseRecorder recorder = new PhaseRecorder();
+        final ConfidenceIntervals intervals = bootstrap.estimate(computed.getPredictions(), recorder);
+        recorder.finish(Phase.BOOTSTRAP);
+        final ClassificationResult result = computed.withIntervals(intervals, recorder.getPhases().get(Phase.BOOTSTRAP));
+
+        MetricsRegistry.register(result);
+        if (modelDirectory != null && result.getModel() != null) {
+            saveModel(result.getModel(), modelDirectory);
+        }
+        resultConsumer.accept(result);
+    }
+
+    private static void saveModel(final Classifier model, final String directory) {
+        final Path path = Paths.get(directory, model.getClass().getSimpleName() + MODEL_FILE_SUFFIX);
+        try {
+            Files.createDirectories(path.getParent());
+            SerializationHelper.write(path.toString(), model);
+        } catch (final Exception e) {
+            System.out.println("Can't save model to " + path + ": " + e.getMessage());
+        }
+    }
+
     private static JFreeChart prepareLineChart(final XYDataset dataset) {
         return ChartFactory.createXYLineChart(
                 MAIN_FRAME_TITLE,
@@ -288,7 +514,7 @@ public class Main {
         jf.setSize(width, height);
         jf.getContentPane().setLayout(new BorderLayout());
         jf.getContentPane().add(panel, BorderLayout.CENTER);
-        jf.setLocation(getCentralizedLocation(SCREEN_SIZE, jf.getSize()));
+        jf.setLocation(getCentralizedLocation(Toolkit.getDefaultToolkit().getScreenSize(), jf.getSize()));
 
         jf.addWindowListener(new WindowAdapter() {
             @Override
@@ -360,72 +586,91 @@ public class Main {
         table.getColumnModel().getColumn(column).setCellRenderer(centerRenderer);
     }
 
-    private static void processResult(
-            final Future<ClassificationResult> future,
+    /**
+     * Adds a batch of results to the chart and the table on the event dispatch thread. Series are
+     * added in completion order, so every table row remembers the number of its series. The
+     * chart is redrawn once per batch.
+     */
+    private static void processResults(
+            final List<PlottedResult> results,
             final DefaultXYDataset dataset,
             final JFreeChart chart,
             final JTable table,
-            final List<Classifier> classifiers,
-            final Map<Integer, Integer> classifierPositions) {
-        try {
-            final ClassificationResult result = future.get();
-            final int donePosition;
+            final Map<Class<?>, Integer> classifierRows,
+            final Map<Integer, Integer> plotNumbers) {
+        chart.setNotify(false);
 
-            synchronized (Main.class) {
-                final int classifierIndex = classifiers.indexOf(result.getClassifier());
-                donePosition = classifierPositions.size();
-                classifierPositions.put(classifierIndex, classifierPositions.size());
-            }
+        for (final PlottedResult plotted : results) {
+            final ClassificationResult result = plotted.getResult();
+            final int row = classifierRows.get(result.getClassifier().getClass());
+            plotNumbers.put(row, dataset.getSeriesCount());
 
-            addPlotToGraph(result, dataset, chart);
-            updateProgressInformation(result, table, donePosition);
-        } catch (Exception e) {
-            throw new IllegalArgumentException(e);
+            addPlotToGraph(plotted, dataset, chart);
+            updateProgressInformation(result, table, row);
         }
+
+        packTableColumn(table, FIRST_COLUMN, TABLE_COLUMN_MARGIN);
+        chart.setNotify(true);
     }
 
     private static void addPlotToGraph(
-            final ClassificationResult data,
+            final PlottedResult data,
             final DefaultXYDataset dataset,
             final JFreeChart chart) {
         final int plotNumber = dataset.getSeriesCount();
         final XYItemRenderer renderer = ((XYPlot) chart.getPlot()).getRenderer();
 
-        final double[][] points = {
-                prepareArrayForPlot(data.getFalsePositives()),
-                prepareArrayForPlot(data.getTruePositives())
-        };
-
-        dataset.addSeries(data.getClassifier().getClass().getSimpleName(), points);
+        dataset.addSeries(ParameterSweep.describe(data.getResult().getClassifier()), data.getRocPoints());
         renderer.setSeriesStroke(plotNumber, prepareStrokeByPlotNumber(plotNumber));
-        chart.fireChartChanged();
     }
 
     private static String format(final double value) {
         return String.format("%5.3f", value);
     }
 
+    private static String format(
+            final ConfidenceIntervals intervals,
+            final Function<ConfidenceIntervals, ConfidenceIntervals.Interval> metric) {
+        if (intervals == null) {
+            return NO_INTERVAL_LABEL;
+        }
+        final ConfidenceIntervals.Interval interval = metric.apply(intervals);
+        return '[' + format(interval.getLower()) + ", " + format(interval.getUpper()) + ']';
+    }
+
     private static void updateProgressInformation(
             final ClassificationResult result,
             final JTable table,
-            final int donePosition) {
-        table.setValueAt(format(result.getAreaUnderCurve()), donePosition, 1);
-        table.setValueAt(format(result.getTruePositivesRate()), donePosition, 2);
-        table.setValueAt(format(result.getTrueNegativesRate()), donePosition, 3);
-        table.setValueAt(format(result.getMatthewsCorrelationCoefficient()), donePosition, 4);
-        table.setValueAt(Long.toString(result.getExecutionTime()), donePosition, 5);
-    }
-
-    private static double[] prepareArrayForPlot(final double[] source) {
-        final int n = source.length;
-        final double max = Doubles.max(source);
-        final double[] result = new double[n];
-
-        for (int i = 0; i < n; i++) {
-            result[i] = source[n - i - 1] / max;
+            final int row) {
+        table.setValueAt(ParameterSweep.describe(result.getClassifier()), row, 0);
+        table.setValueAt(format(result.getAreaUnderCurve()), row, 1);
+        table.setValueAt(format(result.getTruePositivesRate()), row, 2);
+        table.setValueAt(format(result.getTrueNegativesRate()), row, 3);
+        table.setValueAt(format(result.getMatthewsCorrelationCoefficient()), row, 4);
+        table.setValueAt(format(result.getIntervals(), ConfidenceIntervals::getAreaUnderCurve), row, 5);
+        table.setValueAt(format(result.getIntervals(), ConfidenceIntervals::getTruePositivesRate), row, 6);
+        table.setValueAt(format(result.getIntervals(), ConfidenceIntervals::getTrueNegativesRate), row, 7);
+        table.setValueAt(format(result.getIntervals(), ConfidenceIntervals::getMatthewsCorrelationCoefficient),
+                row, 8);
+        final String computeTime;
+        if (result.isTimedOut()) {
+            computeTime = String.format(TIMED_OUT_LABEL, result.getCompletedFolds(), result.getNumFolds());
+        } else if (result.isCached()) {
+            computeTime = String.format(CACHED_LABEL, result.getExecutionTime());
+        } else {
+            computeTime = Long.toString(result.getExecutionTime());
         }
-
-        return result;
+        table.setValueAt(computeTime, row, 9);
+        table.setValueAt(Long.toString(result.getQueueTime()), row, 10);
+        table.setValueAt(Long.toString(result.getSavedTime()), row, 11);
+
+        int column = RESULT_HEADER_LABELS.length;
+        for (final Phase phase : Phase.values()) {
+            table.setValueAt(Long.toString(TimeUnit.NANOSECONDS.toMillis(result.getPhase(phase).getWallNanos())),
+                    row, column++);
+        }
+        table.setValueAt(format(result.getTotal().getCpuLoad()), row, column++);
+        table.setValueAt(Long.toString(result.getTotal().getAllocatedBytes() >> 20), row, column);
     }
 
     private static Stroke prepareStrokeByPlotNumber(final int plotNumber) {
@@ -438,6 +683,28 @@ public class Main {
         return new float[]{(float) StrictMath.pow(plotNumber, DASH_GROW_POW) * 2};
     }
 
+    /**
+     * Result together with its ROC curve downsampled for the chart, prepared before the result is
+     * handed over to the event dispatch thread.
+     */
+    private static class PlottedResult {
+        ClassificationResult result;
+        double[][] rocPoints;
+
+        PlottedResult(final ClassificationResult result, final double[][] rocPoints) {
+            this.result = result;
+            this.rocPoints = rocPoints;
+        }
+
+        ClassificationResult getResult() {
+            return result;
+        }
+
+        double[][] getRocPoints() {
+            return rocPoints;
+        }
+    }
+
     private static class ChartComponents {
         JFreeChart chart;
         DefaultXYDataset dataset;
@@ -0,0 +1,65 @@
+package ru.ifmo.cancerassemble;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes classification metrics as MXBeans named
+ * {@code ru.ifmo.cancerassemble:type=Classifier,name=<classifier>}, so they can be inspected
+ * with JConsole or any other JMX client while the application is running.
+ */
+final class MetricsRegistry {
+    private static final String DOMAIN = "ru.ifmo.cancerassemble";
+
+    private MetricsRegistry() {
+    }
+
+    static void register(final ClassificationResult result) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final String classifier = result.getClassifier().getClass().getSimpleName();
+        final Map<String, Long> metrics = toMetrics(result);
+
+        try {
+            final ObjectName name = new ObjectName(DOMAIN + ":type=Classifier,name=" + ObjectName.quote(classifier));
+            try {
+                server.unregisterMBean(name);
+            } catch (final InstanceNotFoundException e) {
+                // first result of this classifier
+            }
+            server.registerMBean(new StandardMBean(new ClassifierMetricsMXBean() {
+                @Override
+                public String getClassifier() {
+                    return classifier;
+                }
+
+                @Override
+                public Map<String, Long> getMetrics() {
+                    return metrics;
+                }
+            }, ClassifierMetricsMXBean.class, true), name);
+        } catch (final JMException e) {
+            System.out.println("Can't register metrics of " + classifier + ": " + e.getMessage());
+        }
+    }
+
+    private static Map<String, Long> toMetrics(final ClassificationResult result) {
+        final Map<String, Long> metrics = new LinkedHashMap<>();
+
+        metrics.put("queueTimeMillis", result.getQueueTime());
+        metrics.put("executionTimeMillis", result.getExecutionTime());
+        result.getPhases().forEach((phase, phaseMetrics) -> {
+            metrics.put(phase.getKey() + ".wallMillis", TimeUnit.NANOSECONDS.toMillis(phaseMetrics.getWallNanos()));
+            metrics.put(phase.getKey() + ".cpuMillis", TimeUnit.NANOSECONDS.toMillis(phaseMetrics.getCpuNanos()));
+            metrics.put(phase.getKey() + ".allocatedBytes", phaseMetrics.getAllocatedBytes());
+        });
+
+        return metrics;
+    }
+}
@@ -0,0 +1,171 @@
+package ru.ifmo.cancerassemble;
+
+import weka.classifiers.Classifier;
+import weka.core.Instance;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Scores instances with a trained classifier in micro-batches. Submitted instances are queued,
+ * and a dispatcher thread hands them to the worker pool in batches of at most the maximum size:
+ * a batch is closed when it is full or when its oldest instance has waited for the maximum
+ * delay. The dispatcher forms a batch only when a worker is free, so under load batches grow
+ * up to the maximum size instead of queueing up in the pool. Weka classifiers aren't safe to
+ * use from several threads, so every worker scores with its own copy of the model.
+ */
+final class MicroBatcher implements Closeable {
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder scored = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final long startTime = System.nanoTime();
+    private final ThreadLocal<Classifier> models;
+    private final Semaphore idleWorkers;
+    private final ExecutorService workers;
+    private final Thread dispatcher;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private volatile boolean closed;
+
+    MicroBatcher(
+            final Classifier model,
+            final int numWorkers,
+            final int maxBatchSize,
+            final long maxDelayNanos) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelayNanos;
+        this.models = ThreadLocal.withInitial(() -> copy(model));
+        this.idleWorkers = new Semaphore(numWorkers);
+        this.workers = Executors.newFixedThreadPool(numWorkers, runnable -> {
+            final Thread thread = new Thread(runnable, "scoring-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatch, "scoring-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Queues the instance for scoring. The instance must have its data set set.
+     *
+     * @return class distribution of the instance, completed by a worker
+     */
+    CompletableFuture<double[]> submit(final Instance instance) {
+        if (closed) {
+            throw new IllegalStateException("Scoring is stopped");
+        }
+        final Request request = new Request(instance);
+        queue.add(request);
+        return request.result;
+    }
+
+    /**
+     * Time from submission to completion of every scored instance.
+     */
+    LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    long getScored() {
+        return scored.sum();
+    }
+
+    long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Instances scored per second since the batcher was created.
+     */
+    double getThroughput() {
+        return getScored() * (double) TimeUnit.SECONDS.toNanos(1) / (System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        workers.shutdown();
+        try {
+            workers.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Request request = queue.poll(); request != null; request = queue.poll()) {
+            request.result.completeExceptionally(new IllegalStateException("Scoring is stopped"));
+        }
+    }
+
+    private void dispatch() {
+        try {
+            while (!closed) {
+                idleWorkers.acquire();
+                final List<Request> batch = new ArrayList<>(maxBatchSize);
+                batch.add(queue.take());
+                final long deadline = batch.get(0).submitTime + maxDelayNanos;
+
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                while (batch.size() < maxBatchSize) {
+                    final Request next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+
+                workers.execute(() -> score(batch));
+            }
+        } catch (final InterruptedException e) {
+            // closed
+        }
+    }
+
+    private void score(final List<Request> batch) {
+        try {
+            for (final Request request : batch) {
+                try {
+                    request.result.complete(models.get().distributionForInstance(request.instance));
+                } catch (final Exception e) {
+                    request.result.completeExceptionally(e);
+                }
+                latencies.record(System.nanoTime() - request.submitTime);
+            }
+            scored.add(batch.size());
+            batches.increment();
+        } finally {
+            idleWorkers.release();
+        }
+    }
+
+    private static Classifier copy(final Classifier model) {
+        try {
+            return Classifier.makeCopy(model);
+        } catch (final Exception e) {
+            throw new IllegalStateException("Can't copy model " + model.getClass().getSimpleName(), e);
+        }
+    }
+
+    private static final class Request {
+        final Instance instance;
+        final long submitTime = System.nanoTime();
+        final CompletableFuture<double[]> result = new CompletableFuture<>();
+
+        Request(final Instance instance) {
+            this.instance = instance;
+        }
+    }
+}
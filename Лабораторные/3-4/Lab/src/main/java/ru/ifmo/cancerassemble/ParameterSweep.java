@@ -0,0 +1,305 @@
+package ru.ifmo.cancerassemble;
+
+import lombok.Value;
+import weka.classifiers.Classifier;
+import weka.classifiers.bayes.BayesianLogisticRegression;
+import weka.classifiers.bayes.DMNBtext;
+import weka.classifiers.functions.RBFNetwork;
+import weka.classifiers.functions.SimpleLogistic;
+import weka.classifiers.functions.VotedPerceptron;
+import weka.classifiers.lazy.IBk;
+import weka.classifiers.lazy.LWL;
+import weka.classifiers.meta.AdaBoostM1;
+import weka.classifiers.rules.ConjunctiveRule;
+import weka.classifiers.rules.JRip;
+import weka.classifiers.trees.DecisionStump;
+import weka.classifiers.trees.REPTree;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Expands every classifier of the panel into configurations with different options, chosen with
+ * the {@code sweep} system property: {@code none} keeps the default options, {@code grid} takes
+ * every combination of the option values below, and {@code random} takes the default
+ * configuration and {@code sweep.samples} more combinations drawn from the grid. All
+ * configurations of a classifier form its family, of which only the best is reported.
+ *
+ * <p>Configurations are returned longest expected first, so the longest ones don't start last
+ * and leave the other workers idle at the end. The expected time is the rough time of the
+ * default configuration times the ratio of the option values that the training time is
+ * proportional to, such as the number of trees.
+ */
+@Value
+class ParameterSweep {
+    private static final String SWEEP_PROPERTY = "sweep";
+    private static final String SAMPLES_PROPERTY = "sweep.samples";
+    private static final int DEFAULT_SAMPLES = 4;
+    /**
+     * Expected time of a classifier without a known cost, in the units of {@link Space#cost}.
+     */
+    private static final double DEFAULT_COST = 1000;
+    private static final Map<Class<? extends Classifier>, Space> SPACES = new HashMap<>();
+
+    // costs are milliseconds of the default options on the lung cancer data set with one worker
+    static {
+        SPACES.put(AdaBoostM1.class, new Space(800, Arrays.asList(
+                new Parameter("-I", "10", true, "10", "25", "50", "100"))));
+        SPACES.put(BayesianLogisticRegression.class, new Space(600, Collections.singletonList(
+                new Parameter("-P", "1", false, "1", "2"))));
+        SPACES.put(ConjunctiveRule.class, new Space(2700, Collections.emptyList()));
+        SPACES.put(DMNBtext.class, new Space(200, Collections.emptyList()));
+        SPACES.put(DecisionStump.class, new Space(1200, Collections.emptyList()));
+        SPACES.put(IBk.class, new Space(400, Collections.singletonList(
+                new Parameter("-K", "1", false, "1", "3", "5", "7", "9", "15"))));
+        SPACES.put(JRip.class, new Space(4500, Arrays.asList(
+                new Parameter("-O", "2", true, "1", "2", "3"),
+                new Parameter("-N", "2.0", false, "1.0", "2.0", "4.0"))));
+        SPACES.put(LWL.class, new Space(2500, Collections.singletonList(
+                new Parameter("-K", "-1", false, "-1", "10", "20"))));
+        SPACES.put(RBFNetwork.class, new Space(7700, Collections.singletonList(
+                new Parameter("-B", "2", true, "2", "4", "8"))));
+        SPACES.put(REPTree.class, new Space(1400, Arrays.asList(
+                new Parameter("-M", "2", false, "2", "5", "10"),
+                new Parameter("-L", "-1", false, "-1", "3", "6"))));
+        SPACES.put(RandomForest.class, new Space(4200, Arrays.asList(
+                new Parameter("-I", "100", true, "10", "50", "100", "200"),
+                new Parameter("-K", "0", false, "0", "10", "100"))));
+        SPACES.put(SimpleLogistic.class, new Space(22700, Collections.singletonList(
+                new Parameter("-M", "500", true, "100", "250", "500"))));
+        SPACES.put(VotedPerceptron.class, new Space(250, Arrays.asList(
+                new Parameter("-I", "1", true, "1", "5", "10"),
+                new Parameter("-E", "1.0", false, "1.0", "2.0"))));
+    }
+
+    enum Mode {
+        NONE, GRID, RANDOM
+    }
+
+    Mode mode;
+    int samples;
+
+    static ParameterSweep fromSystemProperties() {
+        return new ParameterSweep(
+                Mode.valueOf(System.getProperty(SWEEP_PROPERTY, Mode.NONE.name()).toUpperCase(Locale.ENGLISH)),
+                Math.max(0, Integer.getInteger(SAMPLES_PROPERTY, DEFAULT_SAMPLES)));
+    }
+
+    /**
+     * Configurations of all classifiers, longest expected first. Random samples of a classifier
+     * depend only on the seed and the classifier, not on the order of the panel, so they are
+     * found in the result cache on the next run.
+     */
+    List<Configuration> expand(final List<Classifier> classifiers, final long seed) {
+        final List<Configuration> configurations = new ArrayList<>();
+        for (final Classifier classifier : classifiers) {
+            final Space space = SPACES.get(classifier.getClass());
+            if (space == null || mode == Mode.NONE) {
+                configurations.add(new Configuration(classifier,
+                        space == null ? DEFAULT_COST : space.getCost()));
+                continue;
+            }
+            final Random random = new Random(seed * 31 + classifier.getClass().getName().hashCode());
+            for (final String[] values : select(space, random)) {
+                configurations.add(configure(classifier, space, values));
+            }
+        }
+        configurations.sort(Comparator.comparingDouble(Configuration::getExpectedCost).reversed());
+        return configurations;
+    }
+
+    private List<String[]> select(final Space space, final Random random) {
+        final List<String[]> grid = space.grid();
+        if (mode == Mode.GRID || grid.size() <= samples + 1) {
+            return grid;
+        }
+
+        final String[] defaults = space.defaults();
+        final List<String[]> others = new ArrayList<>(grid.size());
+        for (final String[] values : grid) {
+            if (!Arrays.equals(values, defaults)) {
+                others.add(values);
+            }
+        }
+        Collections.shuffle(others, random);
+
+        final List<String[]> selected = new ArrayList<>(samples + 1);
+        selected.add(defaults);
+        selected.addAll(others.subList(0, samples));
+        return selected;
+    }
+
+    private static Configuration configure(final Classifier classifier, final Space space, final String[] values) {
+        final List<Parameter> parameters = space.getParameters();
+        final String[] options = new String[2 * parameters.size()];
+        double cost = space.getCost();
+        for (int i = 0; i < parameters.size(); i++) {
+            final Parameter parameter = parameters.get(i);
+            options[2 * i] = parameter.getFlag();
+            options[2 * i + 1] = values[i];
+            if (parameter.isScalesCost()) {
+                cost *= Double.parseDouble(values[i]) / Double.parseDouble(parameter.getDefaultValue());
+            }
+        }
+
+        try {
+            return new Configuration(Classifier.forName(classifier.getClass().getName(), options.clone()), cost);
+        } catch (final Exception e) {
+            throw new IllegalArgumentException("Can't configure " + classifier.getClass().getSimpleName()
+                    + " with " + Utils.joinOptions(options), e);
+        }
+    }
+
+    /**
+     * Swept options of the classifier as they are set in it, e.g. {@code -K 5} for {@link IBk},
+     * or an empty string when its options aren't swept.
+     */
+    static String describeOptions(final Classifier classifier) {
+        final Space space = SPACES.get(classifier.getClass());
+        if (space == null) {
+            return "";
+        }
+
+        final String[] options = classifier.getOptions();
+        final StringBuilder description = new StringBuilder();
+        for (final Parameter parameter : space.getParameters()) {
+            final String flag = parameter.getFlag();
+            try {
+                final String value = Utils.getOption(flag.substring(1), options.clone());
+                description.append(description.length() == 0 ? "" : " ").append(flag).append(' ')
+                        .append(value.isEmpty() ? parameter.getDefaultValue() : value);
+            } catch (final Exception e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * Name of the classifier with its swept options, e.g. {@code IBk -K 5}.
+     */
+    static String describe(final Classifier classifier) {
+        final String options = describeOptions(classifier);
+        final String name = classifier.getClass().getSimpleName();
+        return options.isEmpty() ? name : name + ' ' + options;
+    }
+
+    /**
+     * Results of the configurations of a classifier, collected on a single thread. Complete
+     * results beat timed out ones, then the higher AUC wins, and then the faster run. The best
+     * AUC of a complete result is also read by the early stopping of the configurations still
+     * running.
+     */
+    static final class Family {
+        private int configurations;
+        private int remaining;
+        private ClassificationResult best;
+        private volatile double bestAreaUnderCurve = Double.NaN;
+
+        void addConfiguration() {
+            configurations++;
+            remaining++;
+        }
+
+        int getConfigurations() {
+            return configurations;
+        }
+
+        /**
+         * @return whether it was the result of the last configuration of the family
+         */
+        boolean complete(final ClassificationResult result) {
+            if (isBetter(result, best)) {
+                best = result;
+                if (!result.isTimedOut()) {
+                    bestAreaUnderCurve = result.getAreaUnderCurve();
+                }
+            }
+            return --remaining == 0;
+        }
+
+        ClassificationResult getBest() {
+            return best;
+        }
+
+        /**
+         * AUC of the best complete result so far, or {@code NaN} when there is none.
+         */
+        double getBestAreaUnderCurve() {
+            return bestAreaUnderCurve;
+        }
+
+        private static boolean isBetter(final ClassificationResult result, final ClassificationResult best) {
+            if (best == null || result.isTimedOut() != best.isTimedOut()) {
+                return best == null || best.isTimedOut();
+            }
+            if (Double.isNaN(best.getAreaUnderCurve()) || result.getAreaUnderCurve() != best.getAreaUnderCurve()) {
+                return Double.isNaN(best.getAreaUnderCurve()) || result.getAreaUnderCurve() > best.getAreaUnderCurve();
+            }
+            return result.getExecutionTime() < best.getExecutionTime();
+        }
+    }
+
+    @Value
+    static class Configuration {
+        Classifier classifier;
+        double expectedCost;
+    }
+
+    @Value
+    private static class Parameter {
+        String flag;
+        String defaultValue;
+        /**
+         * Whether the training time is proportional to the value.
+         */
+        boolean scalesCost;
+        List<String> values;
+
+        Parameter(final String flag, final String defaultValue, final boolean scalesCost, final String... values) {
+            this.flag = flag;
+            this.defaultValue = defaultValue;
+            this.scalesCost = scalesCost;
+            this.values = Arrays.asList(values);
+        }
+    }
+
+    @Value
+    private static class Space {
+        double cost;
+        List<Parameter> parameters;
+
+        String[] defaults() {
+            return parameters.stream().map(Parameter::getDefaultValue).toArray(String[]::new);
+        }
+
+        /**
+         * Every combination of the parameter values, the values of the first parameter changing
+         * slowest.
+         */
+        List<String[]> grid() {
+            List<String[]> grid = Collections.singletonList(new String[0]);
+            for (final Parameter parameter : parameters) {
+                final List<String[]> extended = new ArrayList<>(grid.size() * parameter.getValues().size());
+                for (final String[] prefix : grid) {
+                    for (final String value : parameter.getValues()) {
+                        final String[] values = Arrays.copyOf(prefix, prefix.length + 1);
+                        values[prefix.length] = value;
+                        extended.add(values);
+                    }
+                }
+                grid = extended;
+            }
+            return grid;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.ifmo.cancerassemble;
+
+/**
+ * Consecutive phases of a classification task, in execution order.
+ */
+enum Phase {
+    TRAINING("training", "Train"),
+    CROSS_VALIDATION("crossValidation", "CV"),
+    THRESHOLD_CURVE("thresholdCurve", "ROC"),
+    METRICS("metrics", "Metrics"),
+    BOOTSTRAP("bootstrap", "Bootstrap");
+
+    private final String key;
+    private final String label;
+
+    Phase(final String key, final String label) {
+        this.key = key;
+        this.label = label;
+    }
+
+    /**
+     * Identifier used in metric names and machine-readable output.
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Short name used in the progress table.
+     */
+    String getLabel() {
+        return label;
+    }
+}
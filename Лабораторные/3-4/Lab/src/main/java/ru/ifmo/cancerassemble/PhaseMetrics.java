@@ -0,0 +1,33 @@
+package ru.ifmo.cancerassemble;
+
+import lombok.Value;
+
+import java.io.Serializable;
+
+/**
+ * Resources spent in one phase of a classification task. CPU time and allocated bytes include
+ * work done on other threads on behalf of the task, so CPU time may exceed wall time when the
+ * phase runs in parallel. Both are zero when the JVM can't measure them.
+ */
+@Value
+class PhaseMetrics implements Serializable {
+    private static final long serialVersionUID = 1L;
+    static final PhaseMetrics ZERO = new PhaseMetrics(0, 0, 0);
+
+    long wallNanos;
+    long cpuNanos;
+    long allocatedBytes;
+
+    PhaseMetrics plus(final PhaseMetrics other) {
+        return new PhaseMetrics(wallNanos + other.wallNanos, cpuNanos + other.cpuNanos,
+                allocatedBytes + other.allocatedBytes);
+    }
+
+    /**
+     * CPU time per wall time: about 1 for a CPU-bound phase on one thread, well below 1 for a
+     * phase that waits for threads or spends its time in GC pauses.
+     */
+    double getCpuLoad() {
+        return wallNanos == 0 ? 0 : (double) cpuNanos / wallNanos;
+    }
+}
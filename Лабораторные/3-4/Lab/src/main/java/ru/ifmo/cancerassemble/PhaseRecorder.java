@@ -0,0 +1,150 @@
+package ru.ifmo.cancerassemble;
+
+import lombok.Value;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures wall time, CPU time and allocated bytes of the consecutive phases of a task running
+ * on the thread that created the recorder. Work the task hands over to other threads is counted
+ * in the current phase when it is wrapped with {@link #track}.
+ *
+ * <p>Allocations of the tracked tasks that are still running are read from their threads on
+ * demand, so {@link #getAllocatedBytes()} sees a task allocating for a long time well before it
+ * completes. A tracked task moves from the running ones to the completed ones under a lock, so it
+ * is never counted twice or missed in between.
+ */
+final class PhaseRecorder {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Thread owner = Thread.currentThread();
+    private final long created = System.nanoTime();
+    private final Map<Phase, PhaseMetrics> phases = new EnumMap<>(Phase.class);
+    private final LongAdder trackedCpuNanos = new LongAdder();
+    private final LongAdder trackedAllocatedBytes = new LongAdder();
+    private final List<RunningTask> runningTasks = new ArrayList<>();
+
+    private long wallStart;
+    private long cpuStart;
+    private long allocatedStart;
+
+    PhaseRecorder() {
+        start();
+    }
+
+    /**
+     * Records everything since the previous phase (or the creation of the recorder) as the given
+     * phase and starts the next one.
+     */
+    void finish(final Phase phase) {
+        final long wall = System.nanoTime();
+        final long cpu = cpuNanos();
+        final long allocated = allocatedBytes();
+
+        phases.put(phase, new PhaseMetrics(wall - wallStart,
+                cpu - cpuStart + trackedCpuNanos.sumThenReset(),
+                allocated - allocatedStart + trackedAllocatedBytes.sumThenReset()));
+        start();
+    }
+
+    /**
+     * Records a phase measured elsewhere, e.g. by the recorder of a task running concurrently.
+     */
+    void record(final Phase phase, final PhaseMetrics metrics) {
+        phases.put(phase, metrics);
+    }
+
+    /**
+     * Wraps a task that may run on another thread so that its CPU time and allocations are added
+     * to the current phase. Tasks that end up running on the owner thread are measured already.
+     */
+    <T> Callable<T> track(final Callable<T> task) {
+        return () -> {
+            if (Thread.currentThread() == owner) {
+                return task.call();
+            }
+
+            final long cpu = cpuNanos();
+            final RunningTask running = new RunningTask(Thread.currentThread().getId(), allocatedBytes());
+            synchronized (runningTasks) {
+                runningTasks.add(running);
+            }
+            try {
+                return task.call();
+            } finally {
+                trackedCpuNanos.add(cpuNanos() - cpu);
+                synchronized (runningTasks) {
+                    runningTasks.remove(running);
+                    trackedAllocatedBytes.add(allocatedBytes() - running.getAllocatedStart());
+                }
+            }
+        };
+    }
+
+    long getElapsedNanos() {
+        return System.nanoTime() - created;
+    }
+
+    /**
+     * Bytes allocated so far by the owner thread and by the tracked tasks, both completed and
+     * still running. Should be called on the owner thread.
+     */
+    long getAllocatedBytes() {
+        long allocated = allocatedBytes() - allocatedStart;
+        for (final PhaseMetrics metrics : phases.values()) {
+            allocated += metrics.getAllocatedBytes();
+        }
+        synchronized (runningTasks) {
+            allocated += trackedAllocatedBytes.sum();
+            if (!runningTasks.isEmpty() && THREADS instanceof com.sun.management.ThreadMXBean) {
+                final long[] threadIds = runningTasks.stream().mapToLong(RunningTask::getThreadId).toArray();
+                final long[] threadAllocated =
+                        ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(threadIds);
+                for (int i = 0; i < threadIds.length; i++) {
+                    // -1 for a thread that is no longer alive
+                    if (threadAllocated[i] >= 0) {
+                        allocated += threadAllocated[i] - runningTasks.get(i).getAllocatedStart();
+                    }
+                }
+            }
+        }
+        return allocated;
+    }
+
+    Map<Phase, PhaseMetrics> getPhases() {
+        return new EnumMap<>(phases);
+    }
+
+    private void start() {
+        wallStart = System.nanoTime();
+        cpuStart = cpuNanos();
+        allocatedStart = allocatedBytes();
+    }
+
+    private static long cpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Tracked task running on another thread, with the bytes that thread had allocated when the
+     * task started.
+     */
+    @Value
+    private static class RunningTask {
+        long threadId;
+        long allocatedStart;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS instanceof com.sun.management.ThreadMXBean
+                ? ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId())
+                : 0;
+    }
+}
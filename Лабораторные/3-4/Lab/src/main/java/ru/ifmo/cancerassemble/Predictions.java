@@ -0,0 +1,99 @@
+package ru.ifmo.cancerassemble;
+
+import lombok.Value;
+import weka.core.Instances;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Cross-validated predictions for the positive class in primitive arrays, one element per test
+ * instance with a known class: the predicted probability of the positive class, whether the
+ * instance belongs to it, and which class the classifier decided on. Instances are counted with
+ * weight 1, which is the weight of every instance of the loaded data sets.
+ */
+@Value
+class Predictions implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final byte NEGATIVE = 0;
+    static final byte POSITIVE = 1;
+    /**
+     * Decision of a classifier that gave no class a positive probability, which {@link
+     * weka.classifiers.Evaluation} leaves out of the confusion matrix.
+     */
+    static final byte UNCLASSIFIED = -1;
+
+    double[] scores;
+    byte[] labels;
+    byte[] decisions;
+
+    int size() {
+        return scores.length;
+    }
+
+    /**
+     * Predictions of a fold from the class distributions predicted for its test instances.
+     */
+    static Predictions ofFold(final double[][] distributions, final Instances test, final int classIndex) {
+        int size = 0;
+        for (int i = 0; i < test.numInstances(); i++) {
+            if (!test.instance(i).classIsMissing()) {
+                size++;
+            }
+        }
+
+        final double[] scores = new double[size];
+        final byte[] labels = new byte[size];
+        final byte[] decisions = new byte[size];
+        int next = 0;
+        for (int i = 0; i < test.numInstances(); i++) {
+            if (test.instance(i).classIsMissing()) {
+                continue;
+            }
+            final double[] distribution = distributions[i];
+            scores[next] = distribution[classIndex];
+            labels[next] = (int) test.instance(i).classValue() == classIndex ? POSITIVE : NEGATIVE;
+            decisions[next] = decide(distribution, classIndex);
+            next++;
+        }
+        return new Predictions(scores, labels, decisions);
+    }
+
+    /**
+     * Concatenation of the predictions in the order of the list.
+     */
+    static Predictions concat(final List<Predictions> parts) {
+        final int size = parts.stream().mapToInt(Predictions::size).sum();
+        final double[] scores = new double[size];
+        final byte[] labels = new byte[size];
+        final byte[] decisions = new byte[size];
+        int offset = 0;
+        for (final Predictions part : parts) {
+            System.arraycopy(part.scores, 0, scores, offset, part.size());
+            System.arraycopy(part.labels, 0, labels, offset, part.size());
+            System.arraycopy(part.decisions, 0, decisions, offset, part.size());
+            offset += part.size();
+        }
+        return new Predictions(scores, labels, decisions);
+    }
+
+    /**
+     * Decision made the way {@link weka.classifiers.Evaluation} makes it: the first class with the
+     * highest probability, provided it is positive.
+     */
+    private static byte decide(final double[] distribution, final int classIndex) {
+        int predicted = -1;
+        double best = 0;
+        for (int i = 0; i < distribution.length; i++) {
+            if (distribution[i] > best) {
+                predicted = i;
+                best = distribution[i];
+            }
+        }
+        if (predicted < 0) {
+            return UNCLASSIFIED;
+        }
+        return predicted == classIndex ? POSITIVE : NEGATIVE;
+    }
+}
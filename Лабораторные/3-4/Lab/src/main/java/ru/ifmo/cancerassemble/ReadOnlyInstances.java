@@ -0,0 +1,142 @@
+package ru.ifmo.cancerassemble;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.Random;
+
+/**
+ * Data set that can be shared between concurrently running classifiers: every method that would
+ * change its structure or instance order throws {@link UnsupportedOperationException}. The
+ * instances themselves are shared as well; Weka learners copy the data set (and with it the
+ * instances, copy-on-write) before modifying it, which is exactly what {@code new Instances(data)}
+ * does for a read-only data set too.
+ */
+final class ReadOnlyInstances extends Instances {
+    private static final long serialVersionUID = 1L;
+
+    ReadOnlyInstances(final Instances source) {
+        super(source, source.numInstances());
+
+        for (int i = 0; i < source.numInstances(); i++) {
+            final Instance instance = (Instance) source.instance(i).copy();
+            instance.setDataset(this);
+            m_Instances.addElement(instance);
+        }
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Shared data set can't be modified, copy it first");
+    }
+
+    @Override
+    public void add(final Instance instance) {
+        throw readOnly();
+    }
+
+    @Override
+    public void delete() {
+        throw readOnly();
+    }
+
+    @Override
+    public void delete(final int index) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteAttributeAt(final int position) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteAttributeType(final int attType) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteStringAttributes() {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteWithMissing(final int attIndex) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteWithMissing(final Attribute att) {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteWithMissingClass() {
+        throw readOnly();
+    }
+
+    @Override
+    public void insertAttributeAt(final Attribute att, final int position) {
+        throw readOnly();
+    }
+
+    @Override
+    public void randomize(final Random random) {
+        throw readOnly();
+    }
+
+    @Override
+    public void renameAttribute(final int att, final String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public void renameAttribute(final Attribute att, final String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public void renameAttributeValue(final int att, final int val, final String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public void renameAttributeValue(final Attribute att, final String val, final String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setClass(final Attribute att) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setClassIndex(final int classIndex) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setRelationName(final String newName) {
+        throw readOnly();
+    }
+
+    @Override
+    public void sort(final int attIndex) {
+        throw readOnly();
+    }
+
+    @Override
+    public void sort(final Attribute att) {
+        throw readOnly();
+    }
+
+    @Override
+    public void stratify(final int numFolds) {
+        throw readOnly();
+    }
+
+    @Override
+    public void swap(final int i, final int j) {
+        throw readOnly();
+    }
+}
@@ -0,0 +1,142 @@
+package ru.ifmo.cancerassemble;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import weka.classifiers.Classifier;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.core.Version;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Directory of serialized classification results, so that a classifier is cross-validated
+ * again only when its inputs change. An entry is keyed by the hash of the data set contents,
+ * the classifier class and options, the number of folds, the fold seed and the Weka version,
+ * and holds the result together with the model trained on the whole data set, if any.
+ * Timed out results are never stored, so a complete result can be reused under any budget.
+ */
+final class ResultCache {
+    private static final String ENTRY_EXTENSION = ".result";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private static final int FORMAT_VERSION = 2;
+    private static final int FILE_NAME_KEY_LENGTH = 16;
+
+    private final Path directory;
+    private final String dataHash;
+    private final int numFolds;
+    private final long seed;
+
+    ResultCache(
+            final Path directory,
+            final Instances data,
+            final int numFolds,
+            final long seed) {
+        this.directory = directory;
+        this.dataHash = hash(data).toString();
+        this.numFolds = numFolds;
+        this.seed = seed;
+    }
+
+    /**
+     * Loads the result of the classifier attached to the given instance, or returns
+     * {@code null} when there is no entry for its inputs or the entry has no model while the
+     * final model mode asks for one.
+     */
+    ClassificationResult load(final Classifier classifier, final FinalModel finalModelMode) {
+        final String key = getKey(classifier);
+        final Path entry = getEntry(classifier, key);
+
+        try (final InputStream input = Files.newInputStream(entry);
+             final ObjectInputStream objects = new ObjectInputStream(input)) {
+            if (!key.equals(objects.readUTF())) {
+                return null;
+            }
+            final ClassificationResult result = (ClassificationResult) objects.readObject();
+            return finalModelMode == FinalModel.CONCURRENT && result.getModel() == null
+                    ? null
+                    : result.fromCache(classifier);
+        } catch (final NoSuchFileException e) {
+            return null;
+        } catch (final IOException | ClassNotFoundException | ClassCastException e) {
+            System.out.println("Can't read cached result " + entry + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores a complete result, replacing the entry of the same inputs.
+     */
+    void store(final ClassificationResult result) {
+        if (result.isTimedOut() || result.isCached()) {
+            return;
+        }
+
+        final String key = getKey(result.getClassifier());
+        final Path entry = getEntry(result.getClassifier(), key);
+        final Path temporary = entry.resolveSibling(entry.getFileName() + TEMPORARY_EXTENSION);
+
+        try {
+            Files.createDirectories(directory);
+            try (final OutputStream output = Files.newOutputStream(temporary);
+                 final ObjectOutputStream objects = new ObjectOutputStream(output)) {
+                objects.writeUTF(key);
+                objects.writeObject(result);
+            }
+            Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            System.out.println("Can't write cached result " + entry + ": " + e.getMessage());
+        }
+    }
+
+    private String getKey(final Classifier classifier) {
+        return Hashing.sha256().newHasher()
+                .putInt(FORMAT_VERSION)
+                .putString(Version.VERSION, StandardCharsets.UTF_8)
+                .putString(dataHash, StandardCharsets.UTF_8)
+                .putString(classifier.getClass().getName(), StandardCharsets.UTF_8)
+                .putString(Utils.joinOptions(classifier.getOptions()), StandardCharsets.UTF_8)
+                .putInt(numFolds)
+                .putLong(seed)
+                .hash().toString();
+    }
+
+    private Path getEntry(final Classifier classifier, final String key) {
+        return directory.resolve(classifier.getClass().getSimpleName() + '-'
+                + key.substring(0, FILE_NAME_KEY_LENGTH) + ENTRY_EXTENSION);
+    }
+
+    /**
+     * Hash of the header and values of the data set, independent of how its source file is
+     * formatted.
+     */
+    private static HashCode hash(final Instances data) {
+        final Hasher hasher = Hashing.sha256().newHasher()
+                .putString(data.relationName(), StandardCharsets.UTF_8)
+                .putInt(data.classIndex());
+
+        for (int attribute = 0; attribute < data.numAttributes(); attribute++) {
+            hasher.putString(data.attribute(attribute).toString(), StandardCharsets.UTF_8);
+        }
+        for (int row = 0; row < data.numInstances(); row++) {
+            final Instance instance = data.instance(row);
+            hasher.putDouble(instance.weight());
+            for (int attribute = 0; attribute < data.numAttributes(); attribute++) {
+                hasher.putDouble(instance.value(attribute));
+            }
+        }
+
+        return hasher.hash();
+    }
+}
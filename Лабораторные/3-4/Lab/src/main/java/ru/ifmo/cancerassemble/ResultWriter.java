@@ -0,0 +1,156 @@
+package ru.ifmo.cancerassemble;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes classification results one by one as they complete, either as CSV with a header line
+ * or as JSON lines (one object per result). ROC points are written as false and true positive
+ * rates; in CSV they share a single column of space separated {@code fpr:tpr} pairs. Confidence
+ * interval columns are left empty (and {@code null} in JSON) when no intervals were estimated.
+ */
+final class ResultWriter implements Closeable {
+    private static final String[] CSV_HEADER = {
+            "classifier", "options", "auc", "sensitivity", "specificity", "mcc", "interval_level",
+            "auc_lower", "auc_upper", "sensitivity_lower", "sensitivity_upper",
+            "specificity_lower", "specificity_upper", "mcc_lower", "mcc_upper",
+            "execution_time_ms", "queue_time_ms", "saved_time_ms", "completed_folds", "timed_out", "cached",
+            "training_wall_ms", "training_cpu_ms", "training_allocated_bytes",
+            "cross_validation_wall_ms", "cross_validation_cpu_ms", "cross_validation_allocated_bytes",
+            "threshold_curve_wall_ms", "threshold_curve_cpu_ms", "threshold_curve_allocated_bytes",
+            "metrics_wall_ms", "metrics_cpu_ms", "metrics_allocated_bytes",
+            "bootstrap_wall_ms", "bootstrap_cpu_ms", "bootstrap_allocated_bytes", "roc"};
+
+    enum Format {
+        CSV, JSON;
+
+        String getExtension() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    private final Writer writer;
+    private final Format format;
+
+    ResultWriter(final Writer writer, final Format format) throws IOException {
+        this.writer = writer;
+        this.format = format;
+
+        if (format == Format.CSV) {
+            writer.write(String.join(",", (CharSequence[]) CSV_HEADER));
+            writer.write(System.lineSeparator());
+            writer.flush();
+        }
+    }
+
+    void write(final ClassificationResult result) throws IOException {
+        final String name = result.getClassifier().getClass().getSimpleName();
+        final String options = ParameterSweep.describeOptions(result.getClassifier());
+        final double[] fpr = result.getFalsePositiveRates();
+        final double[] tpr = result.getTruePositiveRates();
+
+        final StringBuilder line = new StringBuilder();
+        if (format == Format.CSV) {
+            line.append(name)
+                    .append(',').append(options)
+                    .append(',').append(result.getAreaUnderCurve())
+                    .append(',').append(result.getTruePositivesRate())
+                    .append(',').append(result.getTrueNegativesRate())
+                    .append(',').append(result.getMatthewsCorrelationCoefficient());
+            final ConfidenceIntervals intervals = result.getIntervals();
+            line.append(',').append(intervals == null ? "" : Double.toString(intervals.getLevel()));
+            for (final ConfidenceIntervals.Interval interval : getIntervals(intervals)) {
+                line.append(',').append(interval == null ? "" : Double.toString(interval.getLower()))
+                        .append(',').append(interval == null ? "" : Double.toString(interval.getUpper()));
+            }
+            line.append(',').append(result.getExecutionTime())
+                    .append(',').append(result.getQueueTime())
+                    .append(',').append(result.getSavedTime())
+                    .append(',').append(result.getCompletedFolds())
+                    .append(',').append(result.isTimedOut())
+                    .append(',').append(result.isCached());
+            for (final Phase phase : Phase.values()) {
+                final PhaseMetrics metrics = result.getPhase(phase);
+                line.append(',').append(TimeUnit.NANOSECONDS.toMillis(metrics.getWallNanos()))
+                        .append(',').append(TimeUnit.NANOSECONDS.toMillis(metrics.getCpuNanos()))
+                        .append(',').append(metrics.getAllocatedBytes());
+            }
+            line.append(',');
+            for (int i = 0; i < fpr.length; i++) {
+                line.append(i == 0 ? "" : " ").append(fpr[i]).append(':').append(tpr[i]);
+            }
+        } else {
+            line.append("{\"classifier\":\"").append(escape(name)).append('"')
+                    .append(",\"options\":\"").append(escape(options)).append('"')
+                    .append(",\"auc\":").append(toJson(result.getAreaUnderCurve()))
+                    .append(",\"sensitivity\":").append(toJson(result.getTruePositivesRate()))
+                    .append(",\"specificity\":").append(toJson(result.getTrueNegativesRate()))
+                    .append(",\"mcc\":").append(toJson(result.getMatthewsCorrelationCoefficient()))
+                    .append(",\"intervals\":").append(toJson(result.getIntervals()))
+                    .append(",\"executionTimeMs\":").append(result.getExecutionTime())
+                    .append(",\"queueTimeMs\":").append(result.getQueueTime())
+                    .append(",\"savedTimeMs\":").append(result.getSavedTime())
+                    .append(",\"completedFolds\":").append(result.getCompletedFolds())
+                    .append(",\"timedOut\":").append(result.isTimedOut())
+                    .append(",\"cached\":").append(result.isCached())
+                    .append(",\"phases\":{");
+            for (final Phase phase : Phase.values()) {
+                final PhaseMetrics metrics = result.getPhase(phase);
+                line.append(phase.ordinal() == 0 ? "" : ",")
+                        .append('"').append(phase.getKey()).append("\":{")
+                        .append("\"wallMs\":").append(TimeUnit.NANOSECONDS.toMillis(metrics.getWallNanos()))
+                        .append(",\"cpuMs\":").append(TimeUnit.NANOSECONDS.toMillis(metrics.getCpuNanos()))
+                        .append(",\"allocatedBytes\":").append(metrics.getAllocatedBytes())
+                        .append('}');
+            }
+            line.append("},\"roc\":[");
+            for (int i = 0; i < fpr.length; i++) {
+                line.append(i == 0 ? "[" : ",[").append(toJson(fpr[i])).append(',').append(toJson(tpr[i])).append(']');
+            }
+            line.append("]}");
+        }
+
+        writer.write(line.append(System.lineSeparator()).toString());
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Intervals of the metrics in the order of the columns, all {@code null} when there are none.
+     */
+    private static ConfidenceIntervals.Interval[] getIntervals(final ConfidenceIntervals intervals) {
+        return intervals == null
+                ? new ConfidenceIntervals.Interval[4]
+                : new ConfidenceIntervals.Interval[]{intervals.getAreaUnderCurve(), intervals.getTruePositivesRate(),
+                intervals.getTrueNegativesRate(), intervals.getMatthewsCorrelationCoefficient()};
+    }
+
+    private static String toJson(final ConfidenceIntervals intervals) {
+        if (intervals == null) {
+            return "null";
+        }
+        final String[] names = {"auc", "sensitivity", "specificity", "mcc"};
+        final ConfidenceIntervals.Interval[] values = getIntervals(intervals);
+        final StringBuilder json = new StringBuilder("{\"level\":").append(toJson(intervals.getLevel()));
+        for (int i = 0; i < names.length; i++) {
+            json.append(",\"").append(names[i]).append("\":[").append(toJson(values[i].getLower()))
+                    .append(',').append(toJson(values[i].getUpper())).append(']');
+        }
+        return json.append('}').toString();
+    }
+
+    private static String toJson(final double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value);
+    }
+
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,137 @@
+package ru.ifmo.cancerassemble;
+
+import lombok.Value;
+
+import java.util.Arrays;
+
+/**
+ * ROC curve, its area and the confusion counts of the positive class, computed straight from
+ * {@link Predictions} with the same values {@link weka.classifiers.evaluation.ThresholdCurve}
+ * and {@link weka.classifiers.Evaluation} give, but without building an {@code Instances} of the
+ * curve (or two: {@code Evaluation#areaUnderROC} builds one of its own).
+ *
+ * <p>The scores of the positive and of the negative instances are sorted separately as primitive
+ * arrays and merged in a single pass. The curve has a point per distinct score, from the lowest
+ * one up, with the numbers of positive and negative instances scoring at least that much, and
+ * ends with the point at zero. The area is accumulated during the same pass, term by term like
+ * {@code ThresholdCurve#getROCArea} does, so it matches to the last bit.
+ */
+@Value
+class RocCurve {
+    double[] truePositives;
+    double[] falsePositives;
+    double areaUnderCurve;
+    double truePositivesCount;
+    double falsePositivesCount;
+    double falseNegativesCount;
+    double trueNegativesCount;
+
+    static RocCurve compute(final Predictions predictions) {
+        final double[] scores = predictions.getScores();
+        final byte[] labels = predictions.getLabels();
+        final byte[] decisions = predictions.getDecisions();
+
+        int numPositives = 0;
+        double tpc = 0;
+        double fnc = 0;
+        double fpc = 0;
+        double tnc = 0;
+        for (int i = 0; i < labels.length; i++) {
+            final boolean positive = labels[i] == Predictions.POSITIVE;
+            if (positive) {
+                numPositives++;
+            }
+            if (decisions[i] != Predictions.UNCLASSIFIED) {
+                final boolean decidedPositive = decisions[i] == Predictions.POSITIVE;
+                if (positive) {
+                    if (decidedPositive) {
+                        tpc++;
+                    } else {
+                        fnc++;
+                    }
+                } else if (decidedPositive) {
+                    fpc++;
+                } else {
+                    tnc++;
+                }
+            }
+        }
+
+        final double[] positives = new double[numPositives];
+        final double[] negatives = new double[labels.length - numPositives];
+        for (int i = 0, p = 0, n = 0; i < labels.length; i++) {
+            if (labels[i] == Predictions.POSITIVE) {
+                positives[p++] = scores[i];
+            } else {
+                negatives[n++] = scores[i];
+            }
+        }
+        Arrays.sort(positives);
+        Arrays.sort(negatives);
+
+        final double[] tp = new double[labels.length + 1];
+        final double[] fp = new double[labels.length + 1];
+        int points = 0;
+        double area = 0;
+        double cumulativeNegatives = 0;
+        double truePositives = positives.length;
+        double falsePositives = negatives.length;
+        int p = 0;
+        int n = 0;
+
+        while (p < positives.length || n < negatives.length) {
+            final double threshold = p == positives.length
+                    || n < negatives.length && Double.compare(negatives[n], positives[p]) < 0
+                    ? negatives[n]
+                    : positives[p];
+            if (points > 0) {
+                final double cin = fp[points - 1] - falsePositives;
+                area += (tp[points - 1] - truePositives) * (cumulativeNegatives + 0.5 * cin);
+                cumulativeNegatives += cin;
+            }
+            tp[points] = truePositives;
+            fp[points] = falsePositives;
+            points++;
+
+            // not greater rather than equal, so that -0.0 and 0.0 (and NaN) form a single point
+            while (p < positives.length && !(positives[p] > threshold)) {
+                p++;
+                truePositives--;
+            }
+            while (n < negatives.length && !(negatives[n] > threshold)) {
+                n++;
+                falsePositives--;
+            }
+        }
+
+        if (points > 0) {
+            // the segment down to the zero point; the term of the zero point itself is zero
+            final double cin = fp[points - 1];
+            area += tp[points - 1] * (cumulativeNegatives + 0.5 * cin);
+            tp[points] = 0;
+            fp[points] = 0;
+            points++;
+            area /= fp[0] * tp[0];
+        } else {
+            area = Double.NaN;
+        }
+
+        return new RocCurve(Arrays.copyOf(tp, points), Arrays.copyOf(fp, points), area, tpc, fpc, fnc, tnc);
+    }
+
+    /**
+     * Share of the positive instances decided positive, or 0 when there are none.
+     */
+    double getTruePositiveRate() {
+        final double total = truePositivesCount + falseNegativesCount;
+        return total == 0 ? 0 : truePositivesCount / total;
+    }
+
+    /**
+     * Share of the negative instances decided negative, or 0 when there are none.
+     */
+    double getTrueNegativeRate() {
+        final double total = trueNegativesCount + falsePositivesCount;
+        return total == 0 ? 0 : trueNegativesCount / total;
+    }
+}
@@ -0,0 +1,123 @@
+package ru.ifmo.cancerassemble;
+
+import com.google.common.primitives.Doubles;
+
+import java.util.Arrays;
+
+/**
+ * Error-bounded simplification of ROC curves for plotting. Points are kept with a single pass
+ * of sleeve fitting: a segment from the last kept point is extended while every point it skips
+ * stays within the tolerance of it, so no dropped point is farther than the tolerance (in rate
+ * units) from the plotted polyline. The rates are read straight from the counts of the result,
+ * without the full-size copies of {@link ClassificationResult#getFalsePositiveRates()}.
+ */
+final class RocDownsampler {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private RocDownsampler() {
+    }
+
+    /**
+     * @return false positive rates and true positive rates of the kept points, in the order of
+     * {@link ClassificationResult#getFalsePositiveRates()}
+     */
+    static double[][] downsample(final ClassificationResult result, final double tolerance) {
+        final double[] falsePositives = result.getFalsePositives();
+        final double[] truePositives = result.getTruePositives();
+        final int n = falsePositives.length;
+        if (n <= 2 || Doubles.max(falsePositives) == 0 || Doubles.max(truePositives) == 0) {
+            return new double[][]{result.getFalsePositiveRates(), result.getTruePositiveRates()};
+        }
+
+        final Curve curve = new Curve(falsePositives, truePositives);
+        final Polyline kept = new Polyline();
+        int anchor = 0;
+        int previous = 0;
+        double lowerAngle = Double.NEGATIVE_INFINITY;
+        double upperAngle = Double.POSITIVE_INFINITY;
+        kept.add(curve.x(anchor), curve.y(anchor));
+
+        for (int i = 1; i < n; i++) {
+            double dx = curve.x(i) - curve.x(anchor);
+            double dy = curve.y(i) - curve.y(anchor);
+            double distance = Math.hypot(dx, dy);
+            if (distance <= tolerance) {
+                previous = i;
+                continue;
+            }
+
+            double angle = Math.atan2(dy, dx);
+            if (angle < lowerAngle || angle > upperAngle) {
+                anchor = previous;
+                kept.add(curve.x(anchor), curve.y(anchor));
+                lowerAngle = Double.NEGATIVE_INFINITY;
+                upperAngle = Double.POSITIVE_INFINITY;
+
+                dx = curve.x(i) - curve.x(anchor);
+                dy = curve.y(i) - curve.y(anchor);
+                distance = Math.hypot(dx, dy);
+                angle = Math.atan2(dy, dx);
+            }
+
+            if (distance > tolerance) {
+                final double spread = Math.asin(tolerance / distance);
+                lowerAngle = Math.max(lowerAngle, angle - spread);
+                upperAngle = Math.min(upperAngle, angle + spread);
+            }
+            previous = i;
+        }
+
+        if (anchor != n - 1) {
+            kept.add(curve.x(n - 1), curve.y(n - 1));
+        }
+        return kept.toArrays();
+    }
+
+    /**
+     * ROC curve rates computed on access, in the same order and with the same normalization as
+     * {@link ClassificationResult#getFalsePositiveRates()}.
+     */
+    private static final class Curve {
+        private final double[] falsePositives;
+        private final double[] truePositives;
+        private final double falsePositivesMax;
+        private final double truePositivesMax;
+        private final int last;
+
+        Curve(final double[] falsePositives, final double[] truePositives) {
+            this.falsePositives = falsePositives;
+            this.truePositives = truePositives;
+            this.falsePositivesMax = Doubles.max(falsePositives);
+            this.truePositivesMax = Doubles.max(truePositives);
+            this.last = falsePositives.length - 1;
+        }
+
+        double x(final int i) {
+            return falsePositives[last - i] / falsePositivesMax;
+        }
+
+        double y(final int i) {
+            return truePositives[last - i] / truePositivesMax;
+        }
+    }
+
+    private static final class Polyline {
+        private double[] xs = new double[INITIAL_CAPACITY];
+        private double[] ys = new double[INITIAL_CAPACITY];
+        private int size;
+
+        void add(final double x, final double y) {
+            if (size == xs.length) {
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+            }
+            xs[size] = x;
+            ys[size] = y;
+            size++;
+        }
+
+        double[][] toArrays() {
+            return new double[][]{Arrays.copyOf(xs, size), Arrays.copyOf(ys, size)};
+        }
+    }
+}
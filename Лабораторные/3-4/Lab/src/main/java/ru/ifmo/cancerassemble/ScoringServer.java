@@ -0,0 +1,231 @@
+package ru.ifmo.cancerassemble;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves predictions of a classifier serialized by CancerAssemble ({@code -Dmodel.dir}) or any
+ * other Weka classifier written with {@link SerializationHelper}, over HTTP on the loopback
+ * interface.
+ *
+ * <p>{@code POST /score} takes one instance per line as comma separated attribute values in the
+ * order of the data set header, with {@code ?} for missing values; the class value may be
+ * omitted. The response has the class distribution of every instance on the corresponding line.
+ * Instances of all requests are scored in micro-batches by a {@link MicroBatcher}.
+ * {@code GET /stats} returns the number of scored instances and batches, the throughput and the
+ * latency percentiles as JSON.
+ *
+ * <p>Configured with system properties: {@code scoring.model} (model file, required),
+ * {@code scoring.data} (ARFF file the model was trained on, for its header), {@code scoring.port},
+ * {@code scoring.workers} (cores by default), {@code scoring.batch.size} and
+ * {@code scoring.batch.delay} (microseconds a batch waits to fill up).
+ */
+public class ScoringServer {
+    static final String SCORE_PATH = "/score";
+    static final String STATS_PATH = "/stats";
+
+    private static final String MODEL_FILE_PROPERTY = "scoring.model";
+    private static final String DATA_FILE_PROPERTY = "scoring.data";
+    private static final String DATA_FILE_PATH = "data.arff";
+    private static final String PORT_PROPERTY = "scoring.port";
+    private static final int DEFAULT_PORT = 8080;
+    private static final String WORKERS_PROPERTY = "scoring.workers";
+    private static final String BATCH_SIZE_PROPERTY = "scoring.batch.size";
+    private static final int DEFAULT_BATCH_SIZE = 64;
+    private static final String BATCH_DELAY_PROPERTY = "scoring.batch.delay";
+    private static final long DEFAULT_BATCH_DELAY_MICROS = 500;
+    private static final int BACKLOG = 1024;
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private static final String MISSING_VALUE = "?";
+    private static final String VALUE_SEPARATOR = ",";
+
+    private static final int OK = 200;
+    private static final int BAD_REQUEST = 400;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int INTERNAL_ERROR = 500;
+
+    public static void main(final String[] args) throws Exception {
+        final HttpServer server = start(Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT));
+        System.out.println("Scoring on http://localhost:" + server.getAddress().getPort() + SCORE_PATH);
+    }
+
+    /**
+     * Loads the model and the data set header and starts serving them on the given port, or on
+     * any free port when it is 0.
+     */
+    static HttpServer start(final int port) throws Exception {
+        final String modelFile = System.getProperty(MODEL_FILE_PROPERTY);
+        if (modelFile == null) {
+            throw new IllegalArgumentException("Model file isn't set, use -D" + MODEL_FILE_PROPERTY + "=<file>");
+        }
+        final Classifier model = (Classifier) SerializationHelper.read(modelFile);
+        final Instances header = readHeader(System.getProperty(DATA_FILE_PROPERTY, DATA_FILE_PATH));
+        final MicroBatcher batcher = new MicroBatcher(model,
+                Math.max(1, Integer.getInteger(WORKERS_PROPERTY, Runtime.getRuntime().availableProcessors())),
+                Math.max(1, Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE)),
+                TimeUnit.MICROSECONDS.toNanos(Long.getLong(BATCH_DELAY_PROPERTY, DEFAULT_BATCH_DELAY_MICROS)));
+
+        // responses are written as headers and body separately, which Nagle's algorithm delays
+        // until the client's delayed acknowledgement, adding tens of milliseconds to every request
+        if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+            System.setProperty(NO_DELAY_PROPERTY, Boolean.TRUE.toString());
+        }
+        final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                BACKLOG);
+        server.createContext(SCORE_PATH, exchange -> score(exchange, header, batcher));
+        server.createContext(STATS_PATH, exchange -> respond(exchange, OK, formatStats(batcher)));
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "scoring-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+
+        System.out.println(String.format(Locale.ENGLISH, "Serving %s trained on %d attributes of %s",
+                model.getClass().getSimpleName(), header.numAttributes(), header.relationName()));
+        return server;
+    }
+
+    static Instances readHeader(final String filePath) throws IOException {
+        return new Instances(ColumnarCache.load(Paths.get(filePath)).toInstances(), 0);
+    }
+
+    /**
+     * Line of attribute values of the instance in the format of {@code POST /score} requests,
+     * with the class value missing.
+     */
+    static String formatInstance(final Instance instance) {
+        final StringBuilder line = new StringBuilder();
+        for (int attribute = 0; attribute < instance.numAttributes(); attribute++) {
+            if (attribute > 0) {
+                line.append(VALUE_SEPARATOR);
+            }
+            if (attribute == instance.classIndex() || instance.isMissing(attribute)) {
+                line.append(MISSING_VALUE);
+            } else if (instance.attribute(attribute).isNominal()) {
+                line.append(instance.stringValue(attribute));
+            } else {
+                line.append(instance.value(attribute));
+            }
+        }
+        return line.toString();
+    }
+
+    static Instance parseInstance(final String line, final Instances header) {
+        final String[] tokens = line.split(VALUE_SEPARATOR, -1);
+        final boolean hasClass = tokens.length == header.numAttributes();
+        if (!hasClass && tokens.length != header.numAttributes() - 1) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                    "Expected %d or %d values, got %d", header.numAttributes() - 1, header.numAttributes(),
+                    tokens.length));
+        }
+
+        final double[] values = new double[header.numAttributes()];
+        int token = 0;
+        for (int attribute = 0; attribute < values.length; attribute++) {
+            if (attribute == header.classIndex() && !hasClass) {
+                values[attribute] = Instance.missingValue();
+                continue;
+            }
+            final String value = tokens[token++].trim();
+            final Attribute type = header.attribute(attribute);
+            if (value.equals(MISSING_VALUE)) {
+                values[attribute] = Instance.missingValue();
+            } else if (type.isNominal()) {
+                values[attribute] = type.indexOfValue(value);
+                if (values[attribute] < 0) {
+                    throw new IllegalArgumentException("Unknown value " + value + " of " + type.name());
+                }
+            } else {
+                values[attribute] = Double.parseDouble(value);
+            }
+        }
+
+        final Instance instance = new Instance(1.0, values);
+        instance.setDataset(header);
+        return instance;
+    }
+
+    private static void score(
+            final HttpExchange exchange,
+            final Instances header,
+            final MicroBatcher batcher) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, METHOD_NOT_ALLOWED, "Use POST" + System.lineSeparator());
+            return;
+        }
+
+        final List<CompletableFuture<double[]>> distributions = new ArrayList<>();
+        try (final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (!line.trim().isEmpty()) {
+                    distributions.add(batcher.submit(parseInstance(line, header)));
+                }
+            }
+        } catch (final IllegalArgumentException e) {
+            respond(exchange, BAD_REQUEST, e.getMessage() + System.lineSeparator());
+            return;
+        }
+
+        final StringBuilder response = new StringBuilder();
+        try {
+            for (final CompletableFuture<double[]> distribution : distributions) {
+                final double[] probabilities = distribution.join();
+                for (int i = 0; i < probabilities.length; i++) {
+                    response.append(i == 0 ? "" : VALUE_SEPARATOR).append(probabilities[i]);
+                }
+                response.append(System.lineSeparator());
+            }
+        } catch (final CompletionException e) {
+            respond(exchange, INTERNAL_ERROR, e.getCause() + System.lineSeparator());
+            return;
+        }
+        respond(exchange, OK, response.toString());
+    }
+
+    private static String formatStats(final MicroBatcher batcher) {
+        final LatencyHistogram latencies = batcher.getLatencies();
+        return String.format(Locale.ENGLISH,
+                "{\"scored\":%d,\"batches\":%d,\"meanBatchSize\":%.2f,\"throughputPerSecond\":%.1f,"
+                        + "\"latencyMs\":{\"p50\":%.3f,\"p90\":%.3f,\"p99\":%.3f,\"p999\":%.3f,\"max\":%.3f}}%n",
+                batcher.getScored(), batcher.getBatches(),
+                batcher.getBatches() == 0 ? 0 : (double) batcher.getScored() / batcher.getBatches(),
+                batcher.getThroughput(), latencies.getPercentileMillis(50), latencies.getPercentileMillis(90),
+                latencies.getPercentileMillis(99), latencies.getPercentileMillis(99.9),
+                latencies.getPercentileMillis(100));
+    }
+
+    private static void respond(
+            final HttpExchange exchange,
+            final int status,
+            final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (final OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}